@@ -0,0 +1,290 @@
+package com.reginald.andinvoker.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * generates a typed proxy and stub class for each interface annotated with @RemoteInterface,
+ * so that remote interface calls need neither java.lang.reflect.Proxy nor Method.invoke().
+ * classes not generated (e.g. private interfaces) fall back to reflection at runtime.
+ */
+public class RemoteInterfaceProcessor extends AbstractProcessor {
+
+    static final String REMOTE_INTERFACE = "com.reginald.andinvoker.api.RemoteInterface";
+
+    // MUST be the same as com.reginald.andinvoker.internal.itfc.GeneratedInterfaces
+    static final String PROXY_SUFFIX = "$$RemoteProxy";
+    static final String STUB_SUFFIX = "$$RemoteStub";
+
+    private static final String CALL = "com.reginald.andinvoker.internal.Call";
+    private static final String GENERATED_INTERFACES = "com.reginald.andinvoker.internal.itfc.GeneratedInterfaces";
+    private static final String INTERFACE_INFO = "com.reginald.andinvoker.internal.itfc.InterfaceInfo";
+    private static final String INTERFACE_PROXY = "com.reginald.andinvoker.internal.itfc.InterfaceProxy";
+    private static final String INTERFACE_STUB = "com.reginald.andinvoker.internal.itfc.InterfaceStub";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(REMOTE_INTERFACE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement remoteInterface = processingEnv.getElementUtils().getTypeElement(REMOTE_INTERFACE);
+        if (remoteInterface == null) {
+            return false;
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(remoteInterface)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                continue;
+            }
+
+            TypeElement typeElement = (TypeElement) element;
+            if (!isAccessible(typeElement)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "private @RemoteInterface is NOT generated, reflection is used instead.", typeElement);
+                continue;
+            }
+
+            try {
+                generate(typeElement);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "generate error: " + e, typeElement);
+            }
+        }
+
+        return false;
+    }
+
+    private void generate(TypeElement typeElement) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(typeElement)
+                .getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+        String flatName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String interfaceType = processingEnv.getTypeUtils().erasure(typeElement.asType()).toString();
+        List<ExecutableElement> methods = collectMethods(typeElement);
+        List<ExecutableType> memberTypes = new ArrayList<>(methods.size());
+        for (ExecutableElement method : methods) {
+            // type arguments of super interfaces are resolved for overriding
+            memberTypes.add((ExecutableType) processingEnv.getTypeUtils().asMemberOf(
+                    (DeclaredType) typeElement.asType(), method));
+        }
+
+        writeSource(typeElement, packageName, flatName + PROXY_SUFFIX,
+                buildProxy(packageName, flatName + PROXY_SUFFIX, interfaceType, methods, memberTypes));
+        writeSource(typeElement, packageName, flatName + STUB_SUFFIX,
+                buildStub(packageName, flatName + STUB_SUFFIX, interfaceType, methods, memberTypes));
+    }
+
+    private String buildProxy(String packageName, String className, String interfaceType,
+            List<ExecutableElement> methods, List<ExecutableType> memberTypes) {
+        StringBuilder sb = new StringBuilder();
+        appendHeader(sb, packageName);
+        sb.append("public final class ").append(className).append(" extends ").append(INTERFACE_PROXY)
+                .append(" implements ").append(interfaceType).append(" {\n");
+        appendMethods(sb, interfaceType, methods);
+        sb.append("\n    public ").append(className).append("(").append(INTERFACE_INFO)
+                .append(" interfaceInfo, ").append(CALL).append(" call) {\n")
+                .append("        super(interfaceInfo, call, METHODS);\n")
+                .append("    }\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            List<? extends TypeMirror> params = memberTypes.get(i).getParameterTypes();
+            TypeMirror returnType = memberTypes.get(i).getReturnType();
+
+            sb.append("\n    @Override\n    public ").append(erasure(returnType)).append(" ")
+                    .append(method.getSimpleName()).append("(");
+            for (int p = 0; p < params.size(); p++) {
+                if (p > 0) {
+                    sb.append(", ");
+                }
+                sb.append(erasure(params.get(p))).append(" p").append(p);
+            }
+            sb.append(")");
+            appendThrows(sb, memberTypes.get(i));
+            sb.append(" {\n        ");
+
+            if (returnType.getKind() != TypeKind.VOID) {
+                sb.append("return (").append(boxedType(returnType)).append(") ");
+            }
+            sb.append("invokeRemote(").append(i).append(", ");
+            if (params.isEmpty()) {
+                sb.append("null");
+            } else {
+                sb.append("new Object[]{");
+                for (int p = 0; p < params.size(); p++) {
+                    if (p > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append("p").append(p);
+                }
+                sb.append("}");
+            }
+            sb.append(");\n    }\n");
+        }
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private String buildStub(String packageName, String className, String interfaceType,
+            List<ExecutableElement> methods, List<ExecutableType> memberTypes) {
+        StringBuilder sb = new StringBuilder();
+        appendHeader(sb, packageName);
+        sb.append("public final class ").append(className).append(" extends ").append(INTERFACE_STUB)
+                .append("<").append(interfaceType).append("> {\n");
+        appendMethods(sb, interfaceType, methods);
+        sb.append("\n    public ").append(className).append("(").append(INTERFACE_INFO)
+                .append(" interfaceInfo) {\n")
+                .append("        super(interfaceInfo, METHODS);\n")
+                .append("    }\n");
+
+        sb.append("\n    @Override\n    protected Object dispatch(int index, ").append(interfaceType)
+                .append(" target, Object[] args) throws Throwable {\n")
+                .append("        switch (index) {\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            List<? extends TypeMirror> params = memberTypes.get(i).getParameterTypes();
+            boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+
+            sb.append("            case ").append(i).append(":\n                ");
+            if (!isVoid) {
+                sb.append("return ");
+            }
+            sb.append("target.").append(method.getSimpleName()).append("(");
+            for (int p = 0; p < params.size(); p++) {
+                if (p > 0) {
+                    sb.append(", ");
+                }
+                sb.append("(").append(boxedType(params.get(p))).append(") args[")
+                        .append(p).append("]");
+            }
+            sb.append(");\n");
+            if (isVoid) {
+                sb.append("                return null;\n");
+            }
+        }
+        sb.append("            default:\n")
+                .append("                throw new IllegalArgumentException(\"unknown method index \" + index);\n")
+                .append("        }\n")
+                .append("    }\n");
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private void appendHeader(StringBuilder sb, String packageName) {
+        sb.append("// Generated by andinvoker-compiler. Do NOT modify!\n");
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n");
+        }
+        sb.append("\n@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+    }
+
+    private void appendMethods(StringBuilder sb, String interfaceType, List<ExecutableElement> methods) {
+        sb.append("    private static final java.lang.reflect.Method[] METHODS = {\n");
+        for (ExecutableElement method : methods) {
+            sb.append("            ").append(GENERATED_INTERFACES).append(".method(")
+                    .append(interfaceType).append(".class, \"").append(method.getSimpleName()).append("\"");
+            for (VariableElement param : method.getParameters()) {
+                sb.append(", ").append(erasure(param.asType())).append(".class");
+            }
+            sb.append("),\n");
+        }
+        sb.append("    };\n");
+    }
+
+    private void appendThrows(StringBuilder sb, ExecutableType methodType) {
+        List<? extends TypeMirror> thrownTypes = methodType.getThrownTypes();
+        for (int i = 0; i < thrownTypes.size(); i++) {
+            sb.append(i == 0 ? " throws " : ", ").append(erasure(thrownTypes.get(i)));
+        }
+    }
+
+    private List<ExecutableElement> collectMethods(TypeElement typeElement) {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers(typeElement))) {
+            Element owner = method.getEnclosingElement();
+            if (owner.getKind() != ElementKind.INTERFACE ||
+                    !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+
+            StringBuilder key = new StringBuilder(method.getSimpleName());
+            for (VariableElement param : method.getParameters()) {
+                key.append(",").append(erasure(param.asType()));
+            }
+            if (!methods.containsKey(key.toString())) {
+                methods.put(key.toString(), method);
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String boxedType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(
+                    processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private static boolean isAccessible(TypeElement typeElement) {
+        Element element = typeElement;
+        while (element != null && !(element instanceof PackageElement)) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void writeSource(TypeElement typeElement, String packageName, String className,
+            String source) throws IOException {
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedName, typeElement);
+        Writer writer = sourceFile.openWriter();
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -1,4 +1,10 @@
 -keep @com.reginald.andinvoker.api.RemoteInterface class ** { public <methods>;}
 -keep interface com.reginald.andinvoker.api._IRemote {
     public <methods>;
-}
\ No newline at end of file
+}
+-keep class **$$RemoteProxy {
+    public <init>(...);
+}
+-keep class **$$RemoteStub {
+    public <init>(...);
+}
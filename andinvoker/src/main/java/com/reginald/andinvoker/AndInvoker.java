@@ -5,29 +5,48 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Bundle;
+import android.os.DeadObjectException;
 import android.os.IBinder;
 import android.os.RemoteException;
+import android.os.SystemClock;
 
 import com.reginald.andinvoker.api.Codec;
 import com.reginald.andinvoker.api.Decoder;
 import com.reginald.andinvoker.api.Encoder;
 import com.reginald.andinvoker.api.ICall;
+import com.reginald.andinvoker.api.IDirectoryListener;
+import com.reginald.andinvoker.api.IInvokeCallback;
 import com.reginald.andinvoker.api.IInvoker;
+import com.reginald.andinvoker.api.IMetricsListener;
 import com.reginald.andinvoker.api.IServiceFetcher;
+import com.reginald.andinvoker.api.ITracer;
+import com.reginald.andinvoker.api.IWarmUpCallback;
 import com.reginald.andinvoker.api._IRemote;
+import com.reginald.andinvoker.internal.AsyncExecutor;
+import com.reginald.andinvoker.internal.Backoff;
 import com.reginald.andinvoker.internal.BinderParcelable;
 import com.reginald.andinvoker.internal.Call;
 import com.reginald.andinvoker.internal.CallWrapper;
+import com.reginald.andinvoker.internal.InvokeTrace;
 import com.reginald.andinvoker.internal.InvokerBridge;
+import com.reginald.andinvoker.internal.LargePayload;
 import com.reginald.andinvoker.internal.LogUtil;
+import com.reginald.andinvoker.internal.ServiceDispatcher;
+import com.reginald.andinvoker.internal.Stream;
 import com.reginald.andinvoker.internal.cache.BinderCache;
 import com.reginald.andinvoker.internal.itfc.InterfaceHandler;
 import com.reginald.andinvoker.internal.itfc.InterfaceInfo;
 import com.reginald.andinvoker.internal.itfc.InterfaceParcelable;
+import com.reginald.andinvoker.internal.itfc.RebindableCall;
+import com.reginald.andinvoker.internal.metrics.InvokeMetrics;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 /**
  *  register/unregister services
@@ -36,7 +55,38 @@ import java.util.Map;
 public class AndInvoker {
     private static final String TAG = "AndInvoker";
 
-    private static final Map<String, InvokerBridge> sInvokerClientMap = new HashMap<>(2);
+    private static final ConcurrentHashMap<String, ProviderConnection> sInvokerClientMap =
+            new ConcurrentHashMap<>(2);
+
+    // provider -> name -> cache key, so that fetching a cached service allocates nothing
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> sCacheKeys =
+            new ConcurrentHashMap<>(2);
+    // keys beyond it are built for each call, e.g. for names generated at runtime
+    private static final int MAX_CACHE_KEYS = 256;
+
+    // hubs of this version resolve owners of remotely registered invokers
+    private static final int PROTOCOL_VERSION_DIRECT_ROUTE = 5;
+    // hubs of this version list registered services
+    private static final int PROTOCOL_VERSION_DIRECTORY = 6;
+    // hubs of this version register services in one transaction
+    private static final int PROTOCOL_VERSION_BULK_REGISTER = 7;
+    // owners of this version report unregistered invokers by a result marker,
+    // and tell whether a service is dispatched before the params are sent
+    private static final int PROTOCOL_VERSION_INVOKE_DIRECT = 8;
+
+    private static volatile boolean sDirectRouting = true;
+
+    // reconnect dead providers and rebind interface proxies, see setResilientEnabled()
+    private static volatile boolean sResilient = false;
+    // reconnects scheduled after a provider died, the next call still reconnects after them
+    private static final int MAX_RECONNECT_ATTEMPTS = 8;
+    // provider + interface name -> resilient proxy, held for the app lifetime
+    private static final ConcurrentHashMap<String, _IRemote> sResilientInterfaces =
+            new ConcurrentHashMap<>();
+
+    // whether services answer sync invokes by ServiceDispatcher#dispatchedResult()
+    private static final ConcurrentHashMap<String, Boolean> sDispatchedServices =
+            new ConcurrentHashMap<>();
 
     private static volatile BinderCache<IBinder> sBinderServiceCache =
             new BinderCache<IBinder>("Client#Binder");
@@ -58,7 +108,27 @@ public class AndInvoker {
      */
     public static IBinder fetchService(final Context context, final String provider,
             final String serviceName) throws InvokeException {
-        return sBinderServiceCache.get(cacheKey(provider, serviceName), new BinderCache.Loader<IBinder>() {
+        InvokeMetrics.Record record = InvokeMetrics.begin(InvokeMetrics.SIDE_CLIENT,
+                InvokeMetrics.OP_FETCH_SERVICE, provider, serviceName);
+        try {
+            return fetchServiceInternal(context, provider, serviceName);
+        } catch (RuntimeException e) {
+            InvokeMetrics.fail(record, e);
+            throw e;
+        } finally {
+            InvokeMetrics.end(record);
+        }
+    }
+
+    private static IBinder fetchServiceInternal(final Context context, final String provider,
+            final String serviceName) {
+        String key = cacheKey(provider, serviceName);
+        IBinder cached = sBinderServiceCache.peek(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return sBinderServiceCache.get(key, new BinderCache.Loader<IBinder>() {
             @Override
             public IBinder load() {
                 InvokerBridge invokerManager = ensureService(context, provider);
@@ -92,7 +162,7 @@ public class AndInvoker {
         if (serviceFetcher != null) {
             InvokerBridge invokerManager = ensureService(context, provider);
             if (invokerManager != null) {
-                return AndInvokerProvider.registerService(context, invokerManager,
+                return AndInvokerProvider.registerService(context, provider, invokerManager,
                         serviceName, serviceFetcher);
             }
         }
@@ -137,7 +207,8 @@ public class AndInvoker {
             throws InvokeException {
         InvokerBridge invokerManager = ensureService(context, provider);
         if (invokerManager != null) {
-            return AndInvokerProvider.registerService(context, invokerManager, serviceName, null);
+            return AndInvokerProvider.registerService(context, provider, invokerManager,
+                    serviceName, null);
         }
 
         throw new InvokeException(String.format("service unregister failed for %s @ %s",
@@ -184,13 +255,28 @@ public class AndInvoker {
      */
     public static boolean registerInvoker(Context context, String provider, String serviceName,
             final IInvoker invoker) {
+        return registerInvoker(context, provider, serviceName, invoker, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * register IInvoker in local/remote process dynamically.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invoker instance of IInvoker
+     * @param policy where invokes run in the registering process, see {@link DispatchPolicy}
+     * @return if success
+     * @throws InvokeException InvokeException throws if register fails
+     */
+    public static boolean registerInvoker(Context context, String provider, String serviceName,
+            final IInvoker invoker, DispatchPolicy policy) {
         if (invoker != null) {
             return registerInvoker(context, provider, serviceName, new IServiceFetcher<IInvoker>() {
                 @Override
                 public IInvoker onFetchService(Context context) {
                     return invoker;
                 }
-            });
+            }, policy);
         }
 
         throw new InvokeException(String.format("invoker register failed for %s @ %s",
@@ -208,10 +294,26 @@ public class AndInvoker {
      */
     public static boolean registerInvoker(Context context, String provider, String serviceName,
             IServiceFetcher<IInvoker> invokerFetcher) throws InvokeException {
+        return registerInvoker(context, provider, serviceName, invokerFetcher, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * register IInvoker in local/remote process dynamically.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invokerFetcher instance of IServiceFetcher
+     * @param policy where invokes run in the registering process, see {@link DispatchPolicy}
+     * @return if success
+     * @throws InvokeException InvokeException throws if register fails
+     */
+    public static boolean registerInvoker(Context context, String provider, String serviceName,
+            IServiceFetcher<IInvoker> invokerFetcher, DispatchPolicy policy) throws InvokeException {
         if (invokerFetcher != null) {
             InvokerBridge invokerManager = ensureService(context, provider);
             if (invokerManager != null) {
-                return AndInvokerProvider.registerInvoker(context, invokerManager, serviceName, invokerFetcher);
+                return AndInvokerProvider.registerInvoker(context, provider, invokerManager, serviceName,
+                        invokerFetcher, policy);
             }
         }
 
@@ -232,22 +334,268 @@ public class AndInvoker {
      */
     public static Bundle invoke(Context context, String provider, String serviceName,
             String methodName, Bundle params, ICall callback) throws InvokeException {
-        InvokerBridge invokerManager = ensureService(context, provider);
-        if (invokerManager != null) {
+        InvokeMetrics.Record record = InvokeMetrics.begin(InvokeMetrics.SIDE_CLIENT,
+                InvokeMetrics.OP_INVOKE, provider, serviceName);
+        ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_INVOKE, serviceName, methodName);
+        try {
+            return invokeInternal(context, provider, serviceName, methodName, params, callback);
+        } catch (RuntimeException e) {
+            InvokeMetrics.fail(record, e);
+            OverloadedException overloaded = OverloadedException.from(e);
+            throw overloaded != null ? overloaded : e;
+        } finally {
+            InvokeTrace.end(tracer);
+            InvokeMetrics.end(record);
+        }
+    }
+
+    private static Bundle invokeInternal(Context context, String provider, String serviceName,
+            String methodName, Bundle params, ICall callback) {
+        InvokerBridge hub = ensureService(context, provider);
+        if (hub != null) {
+            Call invokeCallback = CallWrapper.build(callback);
+            ProviderConnection connection = sInvokerClientMap.get(provider);
+            boolean directInvoke = connection != null
+                    && connection.remoteProtocolVersion() >= PROTOCOL_VERSION_INVOKE_DIRECT;
+            InvokerBridge invokerManager = directInvoke ? route(provider, hub, serviceName) : hub;
+            Bundle result;
             try {
-                Call invokeCallback = CallWrapper.build(callback);
-                Bundle invokeResult = invokerManager.invoke(serviceName,
-                        methodName, params, invokeCallback);
-                return invokeResult;
+                result = invokeOn(invokerManager, invokerManager != hub, directInvoke, provider,
+                        serviceName, methodName, params, invokeCallback);
+            } catch (DeadObjectException e) {
+                dropRoute(provider, serviceName, invokerManager);
+                throw new InvokeException(e);
             } catch (RemoteException e) {
                 throw new InvokeException(e);
             }
+            if (invokerManager == hub || !AndInvokerProvider.isNoInvokerResult(result)) {
+                return result;
+            }
+
+            // the owner unregistered the invoker, which did NOT run. ask the hub again
+            dropRoute(provider, serviceName, invokerManager);
+            try {
+                result = invokeOn(hub, false, directInvoke, provider, serviceName, methodName,
+                        params, invokeCallback);
+            } catch (RemoteException e) {
+                throw new InvokeException(e);
+            }
+            return result;
         }
 
         throw new InvokeException(String.format("invoker method %s error for %s @ %s",
                 methodName, serviceName, provider));
     }
 
+    private static Bundle invokeOn(InvokerBridge invokerManager, boolean direct, boolean probe,
+            String provider, String serviceName, String methodName, Bundle params,
+            Call invokeCallback) throws RemoteException {
+        // local bridges run dispatched services and wait for them
+        String key = invokerManager instanceof InvokerBridge.Stub ? null :
+                cacheKey(provider, serviceName);
+        Boolean dispatched = key != null ? sDispatchedServices.get(key) : null;
+        if (dispatched == null && key != null && probe) {
+            // ask first, so that the params are sent only once
+            dispatched = invokerManager.probeDispatched(serviceName);
+            sDispatchedServices.put(key, dispatched);
+        }
+        if (Boolean.TRUE.equals(dispatched)) {
+            return invokeDispatched(invokerManager, serviceName, methodName, params, invokeCallback);
+        }
+
+        // owners answer direct invokes of unregistered invokers with a marker instead of forwarding
+        Bundle invokeResult = LargePayload.unpack(direct ?
+                invokerManager.invokeDirect(serviceName, methodName, params, invokeCallback) :
+                invokerManager.invoke(serviceName, methodName, params, invokeCallback));
+        if (ServiceDispatcher.isDispatched(invokeResult)) {
+            if (key != null) {
+                // the service runs on its own executor, always invoke it async from now on
+                sDispatchedServices.put(key, Boolean.TRUE);
+            }
+            return invokeDispatched(invokerManager, serviceName, methodName, params, invokeCallback);
+        }
+        return invokeResult;
+    }
+
+    /**
+     * invoke IInvoker asynchronously with a oneway ipc, the caller is NOT blocked by the remote invoker.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param methodName methodName
+     * @param params params
+     * @param callback callback
+     * @param resultCallback receives the result, null for fire-and-forget
+     * @throws InvokeException InvokeException throws if invoke can NOT be sent
+     */
+    public static void invokeAsync(Context context, String provider, final String serviceName,
+            final String methodName, final Bundle params, ICall callback,
+            final IInvokeCallback resultCallback) throws InvokeException {
+        InvokerBridge hub = ensureService(context, provider);
+        if (hub != null) {
+            final InvokerBridge invokerManager = route(provider, hub, serviceName);
+            final Call invokeCallback = CallWrapper.build(callback);
+            final Call invokeResultCallback = resultCallback == null ? null : new CallWrapper() {
+                @Override
+                public Bundle onCall(Bundle result) {
+                    resultCallback.onInvokeResult(InvokeResult.fromBundle(result));
+                    return null;
+                }
+            };
+
+            if (invokerManager instanceof InvokerBridge.Stub) {
+                // local bridge is NOT oneway
+                AsyncExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            invokerManager.invokeAsync(serviceName, methodName, params,
+                                    invokeCallback, invokeResultCallback);
+                        } catch (RemoteException e) {
+                            LogUtil.e(TAG, "invokeAsync() local error!", e);
+                        }
+                    }
+                });
+                return;
+            }
+
+            try {
+                invokerManager.invokeAsync(serviceName, methodName, params, invokeCallback,
+                        invokeResultCallback);
+                return;
+            } catch (DeadObjectException e) {
+                dropRoute(provider, serviceName, invokerManager);
+                throw new InvokeException(e);
+            } catch (RemoteException e) {
+                throw new InvokeException(e);
+            }
+        }
+
+        throw new InvokeException(String.format("invoker async method %s error for %s @ %s",
+                methodName, serviceName, provider));
+    }
+
+    /**
+     * invoke IStreamInvoker, results are pulled in chunks of {@link ResultStream#DEFAULT_CHUNK_SIZE}
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param methodName methodName
+     * @param params params
+     * @param callback callback
+     * @return result stream, MUST be closed if NOT read to the end
+     * @throws InvokeException InvokeException throws if invoke fails
+     */
+    public static ResultStream invokeStream(Context context, String provider, String serviceName,
+            String methodName, Bundle params, ICall callback) throws InvokeException {
+        return invokeStream(context, provider, serviceName, methodName, params, callback,
+                ResultStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * invoke IStreamInvoker
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param methodName methodName
+     * @param params params
+     * @param callback callback
+     * @param chunkSize max count of results pulled in one ipc
+     * @return result stream, MUST be closed if NOT read to the end
+     * @throws InvokeException InvokeException throws if invoke fails
+     */
+    public static ResultStream invokeStream(Context context, String provider, String serviceName,
+            String methodName, Bundle params, ICall callback, int chunkSize) throws InvokeException {
+        InvokerBridge hub = ensureService(context, provider);
+        if (hub != null) {
+            InvokerBridge invokerManager = route(provider, hub, serviceName);
+            try {
+                Call invokeCallback = CallWrapper.build(callback);
+                Binder token = new Binder();
+                Stream stream = invokerManager.invokeStream(serviceName, methodName, params,
+                        invokeCallback, token);
+                return new ResultStream(stream, token, chunkSize);
+            } catch (DeadObjectException e) {
+                dropRoute(provider, serviceName, invokerManager);
+                throw new InvokeException(e);
+            } catch (RemoteException e) {
+                throw new InvokeException(e);
+            }
+        }
+
+        throw new InvokeException(String.format("invoker stream method %s error for %s @ %s",
+                methodName, serviceName, provider));
+    }
+
+    /**
+     * invoke a batch of IInvoker in one ipc transaction
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param requests invoke requests
+     * @return results in the same order as requests, errors are reported per request
+     * @throws InvokeException InvokeException throws if the batch fails as a whole
+     */
+    public static List<InvokeResult> invokeBatch(Context context, String provider,
+            List<InvokeRequest> requests) throws InvokeException {
+        if (requests == null) {
+            throw new InvokeException(String.format("invoke batch error for null requests @ %s",
+                    provider));
+        }
+
+        InvokerBridge invokerManager = ensureService(context, provider);
+        if (invokerManager != null) {
+            try {
+                List<Bundle> requestBundles = new ArrayList<>(requests.size());
+                for (InvokeRequest request : requests) {
+                    requestBundles.add(request.toBundle());
+                }
+
+                List<Bundle> resultBundles = invokerManager.invokeBatch(requestBundles);
+                if (resultBundles == null || resultBundles.size() != requests.size()) {
+                    throw new InvokeException(String.format("invoke batch results mismatch @ %s",
+                            provider));
+                }
+
+                List<InvokeResult> results = new ArrayList<>(resultBundles.size());
+                DispatchedResult[] dispatchedResults = null;
+                for (int i = 0; i < resultBundles.size(); i++) {
+                    Bundle resultBundle = resultBundles.get(i);
+                    if (!ServiceDispatcher.isDispatched(resultBundle)) {
+                        results.add(InvokeResult.fromBundle(resultBundle));
+                        continue;
+                    }
+
+                    // dispatched services are invoked again by invokeAsync, in the order of the batch
+                    results.add(null);
+                    if (dispatchedResults == null) {
+                        dispatchedResults = new DispatchedResult[resultBundles.size()];
+                    }
+                    InvokeRequest request = requests.get(i);
+                    try {
+                        dispatchedResults[i] = DispatchedResult.send(invokerManager, request.serviceName,
+                                request.methodName, request.params, CallWrapper.build(request.callback));
+                    } catch (RemoteException e) {
+                        results.set(i, new InvokeResult(null, new InvokeException(e)));
+                    }
+                }
+
+                if (dispatchedResults != null) {
+                    for (int i = 0; i < dispatchedResults.length; i++) {
+                        if (dispatchedResults[i] != null) {
+                            results.set(i, dispatchedResults[i].awaitResult());
+                        }
+                    }
+                }
+                return results;
+            } catch (RemoteException e) {
+                throw new InvokeException(e);
+            }
+        }
+
+        throw new InvokeException(String.format("invoke batch error for %d requests @ %s",
+                requests.size(), provider));
+    }
+
     /**
      * unregister IInvoker
      * @param context Context
@@ -260,7 +608,8 @@ public class AndInvoker {
             throws InvokeException {
         InvokerBridge invokerManager = ensureService(context, provider);
         if (invokerManager != null) {
-            return AndInvokerProvider.registerInvoker(context, invokerManager, serviceName, null);
+            return AndInvokerProvider.registerInvoker(context, provider, invokerManager,
+                    serviceName, null, null);
         }
 
         throw new InvokeException(String.format("invoker unregister failed for %s @ %s",
@@ -279,11 +628,28 @@ public class AndInvoker {
      */
     public static <T> boolean registerInterface(Context context, String provider, String interfaceName,
             T object, Class<T> localInterface) throws InvokeException {
+        return registerInterface(context, provider, interfaceName, object, localInterface,
+                DispatchPolicy.INLINE);
+    }
+
+    /**
+     * register IInvoker in remote process dynamically.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param interfaceName interface name
+     * @param object instance
+     * @param localInterface interface class
+     * @param policy where interface calls run in the registering process, see {@link DispatchPolicy}
+     * @return if success
+     * @throws InvokeException InvokeException throws if register fails
+     */
+    public static <T> boolean registerInterface(Context context, String provider, String interfaceName,
+            T object, Class<T> localInterface, DispatchPolicy policy) throws InvokeException {
         if (object != null && localInterface != null) {
             InvokerBridge invokerManager = ensureService(context, provider);
             if (invokerManager != null) {
-                return AndInvokerProvider.registerInterface(context, invokerManager, interfaceName,
-                        object, localInterface);
+                return AndInvokerProvider.registerInterface(context, provider, invokerManager,
+                        interfaceName, object, localInterface, policy);
             }
         }
 
@@ -300,14 +666,70 @@ public class AndInvoker {
             String interfaceName) throws InvokeException {
         InvokerBridge invokerManager = ensureService(context, provider);
         if (invokerManager != null) {
-            return AndInvokerProvider.registerInterface(context, invokerManager, interfaceName,
-                    null, null);
+            return AndInvokerProvider.registerInterface(context, provider, invokerManager,
+                    interfaceName, null, null, null);
         }
 
         throw new InvokeException(String.format("interface unregister failed for %s @ %s",
                 interfaceName, provider));
     }
 
+    /**
+     * register binder services/IInvokers/interfaces in local/remote process dynamically, in one ipc.
+     * all of them are registered or none, registrations replaced by them are kept on failure.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param registrations services to register, see {@link Registration}
+     * @return if success
+     * @throws InvokeException InvokeException throws if register fails
+     */
+    public static boolean register(Context context, String provider, List<Registration> registrations)
+            throws InvokeException {
+        if (registrations != null) {
+            for (Registration registration : registrations) {
+                if (registration == null || registration.isEmpty()) {
+                    throw new InvokeException(String.format("register failed for %s @ %s",
+                            registration, provider));
+                }
+            }
+            return registerInternal(context, provider, registrations, false);
+        }
+
+        throw new InvokeException(String.format("register failed for %s @ %s",
+                registrations, provider));
+    }
+
+    /**
+     * unregister binder services/IInvokers/interfaces, in one ipc.
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param registrations services to unregister, ONLY names and types are used
+     * @return if success
+     * @throws InvokeException InvokeException throws if unregister fails
+     */
+    public static boolean unregister(Context context, String provider, List<Registration> registrations)
+            throws InvokeException {
+        if (registrations != null && !registrations.contains(null)) {
+            return registerInternal(context, provider, registrations, true);
+        }
+
+        throw new InvokeException(String.format("unregister failed for %s @ %s",
+                registrations, provider));
+    }
+
+    private static boolean registerInternal(Context context, String provider,
+            List<Registration> registrations, boolean unregister) throws InvokeException {
+        InvokerBridge invokerManager = ensureService(context, provider);
+        ProviderConnection connection = sInvokerClientMap.get(provider);
+        if (invokerManager != null && connection != null) {
+            return AndInvokerProvider.register(context, provider, invokerManager, registrations,
+                    unregister, connection.remoteProtocolVersion() >= PROTOCOL_VERSION_BULK_REGISTER);
+        }
+
+        throw new InvokeException(String.format("%s failed for %s @ %s",
+                unregister ? "unregister" : "register", registrations, provider));
+    }
+
     /**
      * fetch interface
      * @param context Context
@@ -319,88 +741,297 @@ public class AndInvoker {
      */
     public static <T> T fetchInterface(final Context context, final String provider,
             final String interfaceName, final Class<T> localInterface) throws InvokeException {
-        return (T) sInterfaceServiceCache.get(cacheKey(provider, interfaceName), new BinderCache.Loader<_IRemote>() {
+        InvokeMetrics.Record record = InvokeMetrics.begin(InvokeMetrics.SIDE_CLIENT,
+                InvokeMetrics.OP_FETCH_INTERFACE, provider, interfaceName);
+        try {
+            return fetchInterfaceInternal(context, provider, interfaceName, localInterface);
+        } catch (RuntimeException e) {
+            InvokeMetrics.fail(record, e);
+            throw e;
+        } finally {
+            InvokeMetrics.end(record);
+        }
+    }
+
+    private static <T> T fetchInterfaceInternal(final Context context, final String provider,
+            final String interfaceName, final Class<T> localInterface) {
+        String key = cacheKey(provider, interfaceName);
+        if (sResilient) {
+            return fetchResilientInterface(context, provider, interfaceName, localInterface, key);
+        }
+
+        _IRemote cached = sInterfaceServiceCache.peek(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+
+        return (T) sInterfaceServiceCache.get(key, new BinderCache.Loader<_IRemote>() {
             @Override
             public _IRemote load() {
-                InvokerBridge invokerManager = ensureService(context, provider);
-                if (invokerManager != null) {
-                    try {
-                        Bundle result = invokerManager.fetchInterface(interfaceName);
-                        result.setClassLoader(AndInvoker.class.getClassLoader());
-
-                        InterfaceInfo<T> interfaceInfo = new InterfaceInfo<>(localInterface);
-                        InterfaceParcelable interfaceParcelable = result.getParcelable("binder");
-                        if (interfaceParcelable != null) {
-                            final Call call = Call.Stub.asInterface(interfaceParcelable.iBinder);
-                            return (_IRemote) interfaceInfo.fetchProxy(call);
-                        }
-                    } catch (RemoteException e) {
-                        throw new InvokeException(e);
-                    } catch (Exception e) {
-                        throw new InvokeException(e);
-                    }
-                }
-
-                throw new InvokeException(String.format("interface fetch error for %s @ %s",
-                        interfaceName, provider));
+                InterfaceParcelable interfaceParcelable = fetchInterfaceParcelable(context, provider,
+                        interfaceName);
+                InterfaceInfo<T> interfaceInfo = new InterfaceInfo<>(localInterface);
+                final Call call = Call.Stub.asInterface(interfaceParcelable.iBinder);
+                return (_IRemote) interfaceInfo.fetchProxy(call, interfaceParcelable.methods);
             }
         });
 
     }
 
+    private static <T> T fetchResilientInterface(Context context, String provider, String interfaceName,
+            Class<T> localInterface, String key) {
+        _IRemote cached = sResilientInterfaces.get(key);
+        if (cached != null) {
+            return (T) cached;
+        }
 
-    // NO THROW VERSION APIS:
+        Context appContext = context.getApplicationContext();
+        InterfaceInfo<T> interfaceInfo = new InterfaceInfo<>(localInterface);
+        ResilientCall call = new ResilientCall(appContext != null ? appContext : context, provider,
+                interfaceName, interfaceInfo);
+        // fails like other fetches if NOT registered, rebinds lazily later
+        call.target();
+        _IRemote proxy = (_IRemote) interfaceInfo.fetchProxy(call);
+        cached = sResilientInterfaces.putIfAbsent(key, proxy);
+        return (T) (cached != null ? cached : proxy);
+    }
+
+    private static InterfaceParcelable fetchInterfaceParcelable(Context context, String provider,
+            String interfaceName) throws InvokeException {
+        InvokerBridge invokerManager = ensureService(context, provider);
+        if (invokerManager != null) {
+            try {
+                Bundle result = invokerManager.fetchInterface(interfaceName);
+                result.setClassLoader(AndInvoker.class.getClassLoader());
+                InterfaceParcelable interfaceParcelable = result.getParcelable("binder");
+
+                if (interfaceParcelable != null) {
+                    return interfaceParcelable;
+                }
+            } catch (RemoteException e) {
+                throw new InvokeException(e);
+            } catch (Exception e) {
+                throw new InvokeException(e);
+            }
+        }
+
+        throw new InvokeException(String.format("interface fetch error for %s @ %s",
+                interfaceName, provider));
+    }
 
     /**
-     * fetch binder service from IInvoker, nothrow version
+     * list all binder services, IInvokers and interfaces registered in the provider in one ipc.
+     * services are NOT fetched by it, routes of IInvokers in the result are cached,
+     * so that later invokes of them skip their lookups.
      * @param context Context
      * @param provider authorities of ContentProvider
-     * @param serviceName serviceName
-     * @return binder service or null
+     * @return entries
+     * @throws InvokeException InvokeException throws if fetch fails or the provider does NOT support it
      */
-    public static IBinder fetchServiceNoThrow(Context context, String provider, String serviceName) {
-        try {
-            return fetchService(context, provider, serviceName);
-        } catch (Throwable t) {
-            if (LogUtil.LOG_ENABLED) {
-                t.printStackTrace();
-            }
-        }
-
-        return null;
+    public static List<ServiceEntry> fetchDirectory(Context context, String provider)
+            throws InvokeException {
+        return fetchDirectoryInternal(context, provider, null);
     }
 
     /**
-     * register binder service in remote process dynamically. nothrow version
+     * fetch all entries like {@link #fetchDirectory(Context, String)}, and receive changes of them
+     * until {@link #unwatchDirectory(Context, String, IDirectoryListener)}, or the provider process dies.
+     * changes received before the entries are returned are delivered after them.
      * @param context Context
      * @param provider authorities of ContentProvider
-     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
-     * @param serviceFetcher instance of IServiceFetcher
-     * @return if success
+     * @param listener listener of changes
+     * @return entries
+     * @throws InvokeException InvokeException throws if fetch fails or the provider does NOT support it
      */
-    public static boolean registerServiceNoThrow(Context context, String provider, String serviceName,
-            IServiceFetcher<IBinder> serviceFetcher) throws InvokeException {
-        try {
-            return registerService(context, provider, serviceName, serviceFetcher);
-        } catch (Throwable t) {
-            if (LogUtil.LOG_ENABLED) {
-                t.printStackTrace();
-            }
+    public static List<ServiceEntry> watchDirectory(Context context, String provider,
+            IDirectoryListener listener) throws InvokeException {
+        if (listener == null) {
+            throw new InvokeException("listener is null!");
         }
-
-        return false;
+        return fetchDirectoryInternal(context, provider, listener);
     }
 
     /**
-     * register binder service in remote process dynamically. nothrow version
+     * stop receiving changes of the provider
      * @param context Context
      * @param provider authorities of ContentProvider
-     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
-     * @param binder instance of binder
-     * @return if success
+     * @param listener listener of changes
      */
-    public static boolean registerServiceNoThrow(Context context, String provider, String serviceName,
-            IBinder binder) throws InvokeException {
+    public static void unwatchDirectory(Context context, String provider, IDirectoryListener listener) {
+        ProviderConnection connection = sInvokerClientMap.get(provider);
+        if (connection == null || listener == null) {
+            return;
+        }
+        DirectoryWatcher watcher = connection.removeWatcher(listener);
+        InvokerBridge hub = connection.aliveBridge();
+        if (watcher != null && hub != null) {
+            try {
+                hub.unwatchDirectory(watcher);
+            } catch (RemoteException e) {
+                LogUtil.w(TAG, "unwatchDirectory() error!", e);
+            }
+        }
+    }
+
+    private static List<ServiceEntry> fetchDirectoryInternal(Context context, String provider,
+            IDirectoryListener listener) {
+        InvokeMetrics.Record record = InvokeMetrics.begin(InvokeMetrics.SIDE_CLIENT,
+                InvokeMetrics.OP_FETCH_DIRECTORY, provider, null);
+        try {
+            InvokerBridge hub = ensureService(context, provider);
+            ProviderConnection connection = sInvokerClientMap.get(provider);
+            if (hub == null || connection == null) {
+                throw new InvokeException(String.format("directory fetch error @ %s", provider));
+            }
+            if (connection.remoteProtocolVersion() < PROTOCOL_VERSION_DIRECTORY) {
+                throw new InvokeException(String.format("directory NOT supported @ %s", provider));
+            }
+
+            DirectoryWatcher watcher = listener != null ? connection.addWatcher(listener) : null;
+            List<ServiceEntry> entries;
+            if (watcher != null) {
+                // changes may arrive before the snapshot, apply them after it
+                watcher.beginFetch();
+            }
+            try {
+                List<Bundle> bundles = hub.fetchDirectory(watcher);
+                entries = new ArrayList<>(bundles != null ? bundles.size() : 0);
+                if (bundles != null) {
+                    for (Bundle bundle : bundles) {
+                        ServiceEntry entry = ServiceEntry.fromBundle(bundle);
+                        if (entry != null) {
+                            connection.onEntryFetched(hub, entry);
+                            entries.add(entry);
+                        }
+                    }
+                }
+            } finally {
+                if (watcher != null) {
+                    watcher.endFetch();
+                }
+            }
+            LogUtil.d(TAG, "fetchDirectory() %d entries @ %s", entries.size(), provider);
+            return entries;
+        } catch (RemoteException e) {
+            InvokeMetrics.fail(record, e);
+            throw new InvokeException(e);
+        } catch (RuntimeException e) {
+            InvokeMetrics.fail(record, e);
+            throw e;
+        } finally {
+            InvokeMetrics.end(record);
+        }
+    }
+
+    /**
+     * connect providers and fetch services/interfaces on background threads, so that
+     * later calls hit warm caches. each provider is warmed up in parallel.
+     * @param context Context
+     * @param requests warm-up requests, one for each provider
+     * @param callback receives the result of each provider, nullable
+     */
+    public static void warmUp(Context context, List<WarmUpRequest> requests,
+            final IWarmUpCallback callback) {
+        if (requests == null) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        final Context warmUpContext = appContext != null ? appContext : context;
+        for (final WarmUpRequest request : requests) {
+            AsyncExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    WarmUpResult result = warmUpProvider(warmUpContext, request);
+                    LogUtil.d(TAG, "warmUp() %s", result);
+                    if (callback != null) {
+                        callback.onWarmUp(result);
+                    }
+                }
+            });
+        }
+    }
+
+    private static WarmUpResult warmUpProvider(Context context, WarmUpRequest request) {
+        final String provider = request.provider;
+        long startTime = SystemClock.elapsedRealtime();
+        boolean connected = ensureService(context, provider) != null;
+        long connectTime = SystemClock.elapsedRealtime() - startTime;
+
+        List<String> failedNames = new ArrayList<>();
+        if (connected) {
+            for (String serviceName : request.services) {
+                if (fetchServiceNoThrow(context, provider, serviceName) == null) {
+                    failedNames.add(serviceName);
+                }
+            }
+
+            for (Map.Entry<String, Class<?>> entry : request.interfaces.entrySet()) {
+                if (fetchInterfaceNoThrow(context, provider, entry.getKey(), entry.getValue()) == null) {
+                    failedNames.add(entry.getKey());
+                }
+            }
+        } else {
+            failedNames.addAll(request.services);
+            failedNames.addAll(request.interfaces.keySet());
+        }
+
+        return new WarmUpResult(provider, connected, connectTime,
+                SystemClock.elapsedRealtime() - startTime, failedNames);
+    }
+
+    // NO THROW VERSION APIS:
+
+    /**
+     * fetch binder service from IInvoker, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @return binder service or null
+     */
+    public static IBinder fetchServiceNoThrow(Context context, String provider, String serviceName) {
+        try {
+            return fetchService(context, provider, serviceName);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * register binder service in remote process dynamically. nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param serviceFetcher instance of IServiceFetcher
+     * @return if success
+     */
+    public static boolean registerServiceNoThrow(Context context, String provider, String serviceName,
+            IServiceFetcher<IBinder> serviceFetcher) throws InvokeException {
+        try {
+            return registerService(context, provider, serviceName, serviceFetcher);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * register binder service in remote process dynamically. nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param binder instance of binder
+     * @return if success
+     */
+    public static boolean registerServiceNoThrow(Context context, String provider, String serviceName,
+            IBinder binder) throws InvokeException {
         try {
             return registerService(context, provider, serviceName, binder);
         } catch (Throwable t) {
@@ -456,6 +1087,49 @@ public class AndInvoker {
         return null;
     }
 
+    /**
+     * invoke IStreamInvoker, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param methodName methodName
+     * @param params params
+     * @param callback callback
+     * @return result stream or null
+     */
+    public static ResultStream invokeStreamNoThrow(Context context, String provider, String serviceName,
+            String methodName, Bundle params, ICall callback) {
+        try {
+            return invokeStream(context, provider, serviceName, methodName, params, callback);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * invoke a batch of IInvoker in one ipc transaction, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param requests invoke requests
+     * @return results in the same order as requests or null
+     */
+    public static List<InvokeResult> invokeBatchNoThrow(Context context, String provider,
+            List<InvokeRequest> requests) {
+        try {
+            return invokeBatch(context, provider, requests);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
     /**
      * register IInvoker in remote process dynamically, nothrow version
      * @param context Context
@@ -519,6 +1193,50 @@ public class AndInvoker {
         return false;
     }
 
+    /**
+     * register IInvoker in remote process dynamically, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param invoker instance of IInvoker
+     * @param policy dispatch policy
+     * @return if success
+     */
+    public static boolean registerInvokerNoThrow(Context context, String provider,
+            String serviceName, IInvoker invoker, DispatchPolicy policy) {
+        try {
+            return registerInvoker(context, provider, serviceName, invoker, policy);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * register IInvoker in remote process dynamically, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param serviceName serviceName
+     * @param invokerFetcher service Fetcher
+     * @param policy dispatch policy
+     * @return if success
+     */
+    public static boolean registerInvokerNoThrow(Context context, String provider,
+            String serviceName, IServiceFetcher<IInvoker> invokerFetcher, DispatchPolicy policy) {
+        try {
+            return registerInvoker(context, provider, serviceName, invokerFetcher, policy);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
     /**
      * unregister IInvoker dynamically, nothrow version
      * @param context Context
@@ -562,6 +1280,69 @@ public class AndInvoker {
         return false;
     }
 
+    /**
+     * register IInvoker in remote process dynamically. nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param interfaceName interface name
+     * @param object instance
+     * @param localInterface interface class
+     * @param policy dispatch policy
+     * @return if success
+     */
+    public static <T> boolean registerInterfaceNoThrow(Context context, String provider, String interfaceName,
+            T object, Class<T> localInterface, DispatchPolicy policy) {
+        try {
+            return registerInterface(context, provider, interfaceName, object, localInterface, policy);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * register binder services/IInvokers/interfaces in one ipc, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param registrations services to register, see {@link Registration}
+     * @return if success
+     */
+    public static boolean registerNoThrow(Context context, String provider,
+            List<Registration> registrations) {
+        try {
+            return register(context, provider, registrations);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * unregister binder services/IInvokers/interfaces in one ipc, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @param registrations services to unregister, ONLY names and types are used
+     * @return if success
+     */
+    public static boolean unregisterNoThrow(Context context, String provider,
+            List<Registration> registrations) {
+        try {
+            return unregister(context, provider, registrations);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
     /**
      * unregister interface, nothrow version
      * @param context Context
@@ -602,6 +1383,24 @@ public class AndInvoker {
         return null;
     }
 
+    /**
+     * fetch all services registered in the provider, nothrow version
+     * @param context Context
+     * @param provider authorities of ContentProvider
+     * @return entries, or null if fails
+     */
+    public static List<ServiceEntry> fetchDirectoryNoThrow(Context context, String provider) {
+        try {
+            return fetchDirectory(context, provider);
+        } catch (Throwable t) {
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
     /**
      * check whether the remote of the binder/proxy is alive
      * @param obj binder/proxy object
@@ -660,6 +1459,97 @@ public class AndInvoker {
         sInterfaceServiceCache = BinderCache.noCache();
     }
 
+    /**
+     * invoke IInvokers registered by other processes on their own bridges, instead of being
+     * forwarded by the provider process, which costs one more binder transaction. enabled by default.
+     * calls go through the provider again if the registering process dies.
+     * @param enabled enabled
+     */
+    public static void setDirectRoutingEnabled(boolean enabled) {
+        sDirectRouting = enabled;
+    }
+
+    /**
+     * resilient mode, disabled by default. when enabled:
+     * interfaces fetched later are proxies that fetch the remote interface again after it dies,
+     * so callers may hold them for the app lifetime. methods annotated with
+     * {@link com.reginald.andinvoker.api.Idempotent} are retried after the remote dies.
+     * providers are reconnected with bounded exponential backoff after they die, and services
+     * registered to them by this process are registered again.
+     * @param enabled enabled
+     */
+    public static void setResilientEnabled(boolean enabled) {
+        sResilient = enabled;
+    }
+
+    /**
+     * pass invoke results and interface args larger than threshold by file descriptor
+     * instead of in the binder buffer. MUST be set in every process to take effect on both sides.
+     * @param threshold size in bytes, {@link LargePayload#DISABLED} by default
+     */
+    public static void setLargePayloadThreshold(int threshold) {
+        LargePayload.setThreshold(threshold);
+    }
+
+    /**
+     * stream large payloads through a pipe instead of SharedMemory.
+     * pipes are always used below API 27.
+     * @param streaming streaming
+     */
+    public static void setLargePayloadStreaming(boolean streaming) {
+        LargePayload.setStreaming(streaming);
+    }
+
+    /**
+     * record call counts, errors, payload sizes and latencies of ipc calls in this process,
+     * on both client and server side. disabled by default.
+     * @param enabled enabled
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        InvokeMetrics.setEnabled(enabled);
+    }
+
+    /**
+     * listen to each recorded call, only works if metrics are enabled.
+     * @param listener listener or null
+     */
+    public static void setMetricsListener(IMetricsListener listener) {
+        InvokeMetrics.setListener(listener);
+    }
+
+    /**
+     * dump recorded metrics, e.g. for crash/perf reports.
+     * @return one line for each kind of call, and for each priority lane of dispatchers
+     */
+    public static String dumpMetrics() {
+        return InvokeMetrics.dump() + ServiceDispatcher.dumpAll();
+    }
+
+    /**
+     * clear recorded metrics.
+     */
+    public static void resetMetrics() {
+        InvokeMetrics.reset();
+        ServiceDispatcher.resetAll();
+    }
+
+    /**
+     * add trace sections of ipc calls to systrace/perfetto by android.os.Trace (API 18+),
+     * e.g. "AI:invoke service.method", "AI:dispatch service.method", "AI:encode IMyInterface.method".
+     * @param enabled enabled
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        InvokeTrace.setTracer(enabled ? InvokeTrace.systemTracer() : null);
+    }
+
+    /**
+     * trace sections of ipc calls by a custom tracer.
+     * @param tracer tracer or null to disable
+     */
+    public static void setTracer(ITracer tracer) {
+        InvokeTrace.setTracer(tracer);
+    }
+
     public static void debug(boolean d) {
         LogUtil.LOG_ENABLED = d;
     }
@@ -699,29 +1589,472 @@ public class AndInvoker {
         return BuildConfig.SDK_VERSION;
     }
 
+    private static Bundle invokeDispatched(InvokerBridge invokerManager, String serviceName,
+            String methodName, Bundle params, Call invokeCallback) throws RemoteException {
+        return DispatchedResult.send(invokerManager, serviceName, methodName, params, invokeCallback)
+                .await();
+    }
+
     private static String cacheKey(String provider, String name) {
-        return String.format("[p=%s,s=%s]", provider, name);
+        if (provider == null || name == null) {
+            return "[p=" + provider + ",s=" + name + "]";
+        }
+
+        ConcurrentHashMap<String, String> keys = sCacheKeys.get(provider);
+        if (keys == null) {
+            ConcurrentHashMap<String, String> newKeys = new ConcurrentHashMap<>();
+            keys = sCacheKeys.putIfAbsent(provider, newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+
+        String key = keys.get(name);
+        if (key == null) {
+            String newKey = "[p=" + provider + ",s=" + name + "]";
+            if (keys.size() >= MAX_CACHE_KEYS) {
+                return newKey;
+            }
+            key = keys.putIfAbsent(name, newKey);
+            if (key == null) {
+                key = newKey;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * bridge to invoke the service on
+     * @param hub bridge of the provider
+     * @return bridge of the process registering the service, or the hub
+     */
+    private static InvokerBridge route(String provider, InvokerBridge hub, String serviceName) {
+        if (!sDirectRouting || hub instanceof InvokerBridge.Stub) {
+            // local hubs forward with the same cost
+            return hub;
+        }
+        ProviderConnection connection = sInvokerClientMap.get(provider);
+        return connection != null ? connection.route(hub, serviceName) : hub;
+    }
+
+    private static void dropRoute(String provider, String serviceName, InvokerBridge route) {
+        ProviderConnection connection = sInvokerClientMap.get(provider);
+        if (connection != null) {
+            connection.dropRoute(serviceName, route);
+        }
     }
 
     private static InvokerBridge ensureService(Context context, final String provider) {
-        InvokerBridge service = null;
+        ProviderConnection connection = sInvokerClientMap.get(provider);
+        if (connection != null) {
+            InvokerBridge service = connection.aliveBridge();
+            if (service != null) {
+                return service;
+            }
+        } else {
+            connection = new ProviderConnection(provider);
+            ProviderConnection existing = sInvokerClientMap.putIfAbsent(provider, connection);
+            if (existing != null) {
+                connection = existing;
+            }
+        }
 
-        synchronized (sInvokerClientMap) {
-            service = sInvokerClientMap.get(provider);
+        return connection.connect(context);
+    }
+
+    /**
+     * result of an invoke dispatched by the server, delivered by a oneway callback.
+     */
+    private static class DispatchedResult extends CallWrapper implements IBinder.DeathRecipient {
+        private final IBinder mBridgeBinder;
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile Bundle mResult;
+
+        private DispatchedResult(IBinder bridgeBinder) {
+            mBridgeBinder = bridgeBinder;
+        }
+
+        static DispatchedResult send(InvokerBridge invokerManager, String serviceName, String methodName,
+                Bundle params, Call invokeCallback) throws RemoteException {
+            DispatchedResult dispatchedResult = new DispatchedResult(invokerManager.asBinder());
+            dispatchedResult.mBridgeBinder.linkToDeath(dispatchedResult, 0);
+            try {
+                invokerManager.invokeAsync(serviceName, methodName, params, invokeCallback, dispatchedResult);
+            } catch (RemoteException e) {
+                dispatchedResult.mBridgeBinder.unlinkToDeath(dispatchedResult, 0);
+                throw e;
+            }
+            return dispatchedResult;
+        }
+
+        @Override
+        public Bundle onCall(Bundle result) {
+            mResult = result;
+            mLatch.countDown();
+            return null;
+        }
+
+        @Override
+        public void binderDied() {
+            mLatch.countDown();
+        }
+
+        Bundle await() {
+            InvokeResult invokeResult = awaitResult();
+            if (!invokeResult.isSuccess()) {
+                throw invokeResult.getError();
+            }
+            return invokeResult.getResult();
+        }
+
+        InvokeResult awaitResult() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        mLatch.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                mBridgeBinder.unlinkToDeath(this, 0);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            Bundle result = mResult;
+            if (result == null) {
+                return new InvokeResult(null,
+                        new InvokeException("remote died before the result is delivered!"));
+            }
+            return InvokeResult.fromBundle(result);
+        }
+    }
+
+    /**
+     * receives changes of the directory of a provider, delivered by oneway calls.
+     * changes received while a snapshot is fetched are queued and delivered in order after it.
+     */
+    private static class DirectoryWatcher extends CallWrapper {
+        private final ProviderConnection mConnection;
+        private final IDirectoryListener mListener;
+        // guarded by this
+        private final List<Bundle> mPendingEvents = new ArrayList<>();
+        private int mFetching;
+        private boolean mDraining;
+
+        DirectoryWatcher(ProviderConnection connection, IDirectoryListener listener) {
+            mConnection = connection;
+            mListener = listener;
+        }
+
+        synchronized void beginFetch() {
+            mFetching++;
+        }
+
+        void endFetch() {
+            synchronized (this) {
+                mFetching--;
+            }
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                Bundle event;
+                synchronized (this) {
+                    if (mFetching > 0 || mDraining || mPendingEvents.isEmpty()) {
+                        return;
+                    }
+                    mDraining = true;
+                    event = mPendingEvents.remove(0);
+                }
+                try {
+                    onEvent(event);
+                } finally {
+                    synchronized (this) {
+                        mDraining = false;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Bundle onCall(Bundle event) {
+            synchronized (this) {
+                mPendingEvents.add(event);
+            }
+            drain();
+            return null;
+        }
+
+        private void onEvent(Bundle event) {
+            ServiceEntry entry = ServiceEntry.fromBundle(event);
+            if (entry == null) {
+                return;
+            }
+            boolean removed = ServiceEntry.isRemovedEvent(event);
+            LogUtil.d(TAG, "onServiceChanged() entry = %s, removed = %s", entry, removed);
+            mConnection.onEntryChanged(entry, removed);
+            try {
+                mListener.onServiceChanged(entry, removed);
+            } catch (Throwable t) {
+                LogUtil.e(TAG, "onServiceChanged() listener error!", t);
+            }
+        }
+    }
+
+    /**
+     * target of a resilient interface proxy, fetched from the provider again after it dies.
+     */
+    private static class ResilientCall extends RebindableCall {
+        private final Context mContext;
+        private final String mProvider;
+        private final String mInterfaceName;
+
+        ResilientCall(Context context, String provider, String interfaceName,
+                InterfaceInfo<?> interfaceInfo) {
+            super(interfaceInfo);
+            mContext = context;
+            mProvider = provider;
+            mInterfaceName = interfaceName;
+        }
+
+        @Override
+        protected InterfaceParcelable fetch() throws InvokeException {
+            return fetchInterfaceParcelable(mContext, mProvider, mInterfaceName);
+        }
+    }
+
+    /**
+     * connection to one provider. connecting ONLY blocks callers of the same provider.
+     */
+    private static class ProviderConnection {
+        private final String mProvider;
+        private volatile InvokerBridge mBridge;
+        private volatile int mRemoteProtocolVersion = -1;
+        // serviceName -> owner bridge, or the hub itself if served or forwarded by the hub
+        private final ConcurrentHashMap<String, InvokerBridge> mRoutes = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<IDirectoryListener, DirectoryWatcher> mWatchers =
+                new ConcurrentHashMap<>();
+        // last context connected with, used by reconnects
+        private volatile Context mContext;
+        // the provider died and services of this process are NOT republished yet, guarded by this
+        private boolean mDisconnected;
+        private boolean mRepublishing;
+        private int mReconnectAttempts;
+
+        ProviderConnection(String provider) {
+            mProvider = provider;
+        }
+
+        InvokerBridge route(InvokerBridge hub, String serviceName) {
+            if (serviceName == null || mRemoteProtocolVersion < PROTOCOL_VERSION_DIRECT_ROUTE) {
+                return hub;
+            }
+
+            InvokerBridge route = mRoutes.get(serviceName);
+            if (route != null) {
+                if (route == hub || isAlive(route)) {
+                    return route;
+                }
+                // the owner died, the hub knows whether it registers again
+                mRoutes.remove(serviceName, route);
+            }
+
+            InvokerBridge owner;
+            try {
+                owner = hub.resolveOwner(serviceName);
+            } catch (RemoteException e) {
+                LogUtil.w(TAG, e, "route() resolve owner error for %s", serviceName);
+                return hub;
+            }
+            route = owner != null && isAlive(owner) ? owner : hub;
+            if (mBridge == hub) {
+                mRoutes.put(serviceName, route);
+            }
+            LogUtil.d(TAG, "route() serviceName = %s, route = %s", serviceName, route);
+            return route;
+        }
+
+        void dropRoute(String serviceName, InvokerBridge route) {
+            if (serviceName != null) {
+                mRoutes.remove(serviceName, route);
+            }
+        }
+
+        int remoteProtocolVersion() {
+            return mRemoteProtocolVersion;
+        }
+
+        /**
+         * cache routes of an entry fetched by fetchDirectory
+         */
+        void onEntryFetched(InvokerBridge hub, ServiceEntry entry) {
+            if (entry.type == ServiceEntry.TYPE_INVOKER) {
+                putRoute(hub, entry);
+            }
+        }
+
+        void onEntryChanged(ServiceEntry entry, boolean removed) {
+            InvokerBridge hub = mBridge;
+            if (!removed) {
+                if (hub != null && entry.type == ServiceEntry.TYPE_INVOKER) {
+                    putRoute(hub, entry);
+                }
+                return;
+            }
+
+            String key = cacheKey(mProvider, entry.name);
+            if (entry.type == ServiceEntry.TYPE_BINDER) {
+                sBinderServiceCache.remove(key);
+            } else if (entry.type == ServiceEntry.TYPE_INVOKER) {
+                mRoutes.remove(entry.name);
+            } else if (entry.type == ServiceEntry.TYPE_INTERFACE) {
+                sInterfaceServiceCache.remove(key);
+            }
+        }
+
+        private void putRoute(InvokerBridge hub, ServiceEntry entry) {
+            if (!sDirectRouting || hub instanceof InvokerBridge.Stub
+                    || mRemoteProtocolVersion < PROTOCOL_VERSION_DIRECT_ROUTE) {
+                return;
+            }
+            InvokerBridge route = entry.remote && entry.owner != null && entry.owner.isBinderAlive() ?
+                    InvokerBridge.Stub.asInterface(entry.owner) : hub;
+            if (mBridge == hub) {
+                mRoutes.put(entry.name, route);
+            }
+        }
+
+        DirectoryWatcher addWatcher(IDirectoryListener listener) {
+            DirectoryWatcher watcher = new DirectoryWatcher(this, listener);
+            DirectoryWatcher existing = mWatchers.putIfAbsent(listener, watcher);
+            return existing != null ? existing : watcher;
+        }
+
+        DirectoryWatcher removeWatcher(IDirectoryListener listener) {
+            return mWatchers.remove(listener);
+        }
+
+        private void reset() {
+            mRoutes.clear();
+            // watchers are gone with the hub
+            mWatchers.clear();
+        }
+
+        /**
+         * reconnect in background with bounded exponential backoff, until connected or
+         * MAX_RECONNECT_ATTEMPTS
+         */
+        private void scheduleReconnect() {
+            final int attempt;
+            synchronized (this) {
+                if (mReconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
+                    LogUtil.w(TAG, "scheduleReconnect() give up %s after %d attempts",
+                            mProvider, mReconnectAttempts);
+                    return;
+                }
+                attempt = mReconnectAttempts++;
+            }
+
+            AsyncExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    Context context = mContext;
+                    if (!sResilient || context == null) {
+                        return;
+                    }
+                    LogUtil.d(TAG, "scheduleReconnect() reconnect %s, attempt = %d", mProvider, attempt);
+                    // connect() schedules again itself if republish fails
+                    if (connect(context) == null) {
+                        scheduleReconnect();
+                    }
+                }
+            }, Backoff.delayOf(attempt));
+        }
+
+        /**
+         * register services of this process to the restarted provider again
+         */
+        private boolean republish(InvokerBridge hub, int remoteProtocolVersion) {
+            try {
+                AndInvokerProvider.republish(mProvider, hub,
+                        remoteProtocolVersion >= PROTOCOL_VERSION_BULK_REGISTER);
+                return true;
+            } catch (Throwable t) {
+                LogUtil.e(TAG, "republish() error for " + mProvider, t);
+                return false;
+            }
+        }
+
+        private static boolean isAlive(InvokerBridge bridge) {
+            IBinder iBinder = bridge.asBinder();
+            return iBinder != null && iBinder.isBinderAlive();
+        }
+
+        InvokerBridge aliveBridge() {
+            InvokerBridge service = mBridge;
             if (service != null) {
                 final IBinder iBinder = service.asBinder();
                 if (iBinder != null && iBinder.isBinderAlive()) {
                     return service;
-                } else {
-                    service = null;
                 }
             }
+            return null;
+        }
+
+        InvokerBridge connect(Context context) {
+            InvokerBridge service;
+            int remoteProtocolVersion;
+            synchronized (this) {
+                service = connectLocked(context);
+                if (service == null || !mDisconnected || mRepublishing) {
+                    return service;
+                }
+                if (!sResilient) {
+                    mDisconnected = false;
+                    mReconnectAttempts = 0;
+                    return service;
+                }
+                mRepublishing = true;
+                remoteProtocolVersion = mRemoteProtocolVersion;
+            }
 
-            LogUtil.d(TAG, "ensureService() for %s fetch binder", provider);
+            // blocking ipc, NOT under the lock
+            boolean republished = republish(service, remoteProtocolVersion);
+            synchronized (this) {
+                mRepublishing = false;
+                if (republished && mBridge == service) {
+                    mDisconnected = false;
+                    mReconnectAttempts = 0;
+                }
+            }
+            if (!republished) {
+                scheduleReconnect();
+            }
+            return service;
+        }
+
+        // guarded by this
+        private InvokerBridge connectLocked(Context context) {
+            InvokerBridge service = aliveBridge();
+            if (service != null) {
+                return service;
+            }
+            if (mContext == null) {
+                Context appContext = context.getApplicationContext();
+                mContext = appContext != null ? appContext : context;
+            }
+
+            LogUtil.d(TAG, "ensureService() for %s fetch binder", mProvider);
 
             try {
                 final ContentResolver contentResolver = context.getContentResolver();
-                Uri uri = Uri.parse("content://" + provider);
+                Uri uri = Uri.parse("content://" + mProvider);
                 final Bundle bundle = contentResolver.call(uri, AndInvokerProvider.METHOD_GET_INVOKER,
                         null, null);
                 if (bundle != null) {
@@ -737,28 +2070,41 @@ public class AndInvoker {
                     if (bp != null) {
                         final IBinder iBinder = bp.iBinder;
                         if (iBinder != null) {
+                            final InvokerBridge newService = InvokerBridge.Stub.asInterface(iBinder);
                             iBinder.linkToDeath(new IBinder.DeathRecipient() {
                                 @Override
                                 public void binderDied() {
                                     iBinder.unlinkToDeath(this, 0);
-                                    synchronized (sInvokerClientMap) {
-                                        sInvokerClientMap.remove(provider);
+                                    synchronized (ProviderConnection.this) {
+                                        if (mBridge == newService) {
+                                            mBridge = null;
+                                            mDisconnected = true;
+                                            reset();
+                                        }
+                                    }
+                                    onProcessDied(mProvider, pid, uid);
+                                    if (sResilient) {
+                                        scheduleReconnect();
                                     }
-                                    onProcessDied(provider, pid, uid);
                                 }
                             }, 0);
-                            service = InvokerBridge.Stub.asInterface(iBinder);
-                            sInvokerClientMap.put(provider, service);
+                            reset();
+                            mRemoteProtocolVersion = remoteProtocolVersion;
+                            service = newService;
+                            mBridge = service;
+                            if (!mDisconnected) {
+                                mReconnectAttempts = 0;
+                            }
                         }
-                        LogUtil.d(TAG, "ensureService() service = " + service);
+                        LogUtil.d(TAG, "ensureService() service = %s", service);
                     }
                 }
             } catch (Throwable e) {
                 LogUtil.e(TAG, "ensureService() error!", e);
             }
-        }
 
-        return service;
+            return service;
+        }
     }
 
     private static void checkProtocol(int localProtocol, int remoteProtocol) throws InvokeException {
@@ -5,25 +5,45 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.Parcel;
 import android.os.Process;
+import android.os.RemoteCallbackList;
 import android.os.RemoteException;
 import android.text.TextUtils;
 
 import com.reginald.andinvoker.api.ICall;
 import com.reginald.andinvoker.api.IInvoker;
+import com.reginald.andinvoker.api.IResultStream;
 import com.reginald.andinvoker.api.IServiceFetcher;
+import com.reginald.andinvoker.api.IStreamInvoker;
+import com.reginald.andinvoker.api.ITracer;
 import com.reginald.andinvoker.internal.BinderParcelable;
 import com.reginald.andinvoker.internal.Call;
 import com.reginald.andinvoker.internal.CallWrapper;
+import com.reginald.andinvoker.internal.InvokeTrace;
 import com.reginald.andinvoker.internal.InvokerBridge;
+import com.reginald.andinvoker.internal.LargePayload;
 import com.reginald.andinvoker.internal.LogUtil;
+import com.reginald.andinvoker.internal.ServiceDispatcher;
+import com.reginald.andinvoker.internal.Stream;
+import com.reginald.andinvoker.internal.StreamStub;
 import com.reginald.andinvoker.internal.itfc.InterfaceInfo;
 import com.reginald.andinvoker.internal.itfc.InterfaceParcelable;
+import com.reginald.andinvoker.internal.metrics.InvokeMetrics;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ContentProvider used for internal ipc. You must register this in AndroidManifest.xml for the process where IInovker registered
@@ -40,9 +60,15 @@ public class AndInvokerProvider extends ContentProvider {
 
     private static final String KEY_REMOTE_BRIDGE_TYPE = "ai_remote_bridge_type";
 
-    private static final int REMOTE_BRIDGE_TYPE_BINDER = 1;
-    private static final int REMOTE_BRIDGE_TYPE_INVOKER = 2;
-    private static final int REMOTE_BRIDGE_TYPE_INTERFACE = 3;
+    private static final int REMOTE_BRIDGE_TYPE_BINDER = ServiceEntry.TYPE_BINDER;
+    private static final int REMOTE_BRIDGE_TYPE_INVOKER = ServiceEntry.TYPE_INVOKER;
+    private static final int REMOTE_BRIDGE_TYPE_INTERFACE = ServiceEntry.TYPE_INTERFACE;
+
+    private static final String ERROR_NO_INVOKER = "no invoker found for ";
+    private static final String KEY_NO_INVOKER = "ai_no_invoker";
+
+    // provider -> stub serving services registered by this process to it
+    private static final Map<String, InvokerStub> sRegistrationStubs = new HashMap<>();
 
     private InvokerStub mInvokerStub;
 
@@ -52,11 +78,31 @@ public class AndInvokerProvider extends ContentProvider {
         return bundle;
     }
 
+    static InvokeException noInvokerError(String serviceName) {
+        return new InvokeException(ERROR_NO_INVOKER + serviceName);
+    }
+
+    private static Bundle noInvokerResult() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(KEY_NO_INVOKER, true);
+        return bundle;
+    }
+
+    /**
+     * whether the result of {@link InvokerBridge#invokeDirect} says no invoker is registered,
+     * so the invoke did NOT run
+     * @param result result of invokeDirect
+     * @return true if NO invoker found
+     */
+    static boolean isNoInvokerResult(Bundle result) {
+        return result != null && result.size() == 1 && result.getBoolean(KEY_NO_INVOKER, false);
+    }
+
     @Override
     public boolean onCreate() {
         if (mInvokerStub == null) {
             mInvokerStub = new InvokerStub(getContext());
-            LogUtil.d(TAG, "onCreate() sInvokerStub = " + mInvokerStub);
+            LogUtil.d(TAG, "onCreate() sInvokerStub = %s", mInvokerStub);
         }
         return true;
     }
@@ -87,7 +133,7 @@ public class AndInvokerProvider extends ContentProvider {
     }
 
     public Bundle call(String method, String arg, Bundle extras) {
-        LogUtil.d(TAG, String.format("call method = %s, arg = %s, extras = %s", method, arg, extras));
+        LogUtil.d(TAG, "call method = %s, arg = %s, extras = %s", method, arg, extras);
 
         if (!TextUtils.isEmpty(method)) {
             if (method.equals(METHOD_GET_INVOKER)) {
@@ -99,74 +145,206 @@ public class AndInvokerProvider extends ContentProvider {
                 bundle.putInt(KEY_PROTOCOL_VERSION, AndInvoker.getProtocolVersion());
                 return bundle;
             } else {
-                LogUtil.w(TAG, "call method " + method + " NOT supported!");
+                LogUtil.w(TAG, "call method %s NOT supported!", method);
             }
         }
         return null;
     }
 
-    static boolean registerService(Context context, InvokerBridge invokerBridge, String serviceName,
-            final IServiceFetcher<IBinder> serviceFetcher) throws InvokeException {
+    static boolean registerService(Context context, String provider, InvokerBridge invokerBridge,
+            String serviceName, IServiceFetcher<IBinder> serviceFetcher) throws InvokeException {
+        return register(context, provider, invokerBridge,
+                Collections.singletonList(Registration.service(serviceName, serviceFetcher)),
+                serviceFetcher == null, false);
+    }
+
+    static boolean registerInvoker(Context context, String provider, InvokerBridge invokerBridge,
+            String serviceName, IServiceFetcher<IInvoker> invokerFetcher, DispatchPolicy policy)
+            throws InvokeException {
+        // calls are dispatched in the process where the invoker is registered
+        return register(context, provider, invokerBridge,
+                Collections.singletonList(Registration.invoker(serviceName, invokerFetcher, policy)),
+                invokerFetcher == null, false);
+    }
+
+    static <T> boolean registerInterface(Context context, String provider, InvokerBridge invokerBridge,
+            String serviceName, T object, Class<T> clazz, DispatchPolicy policy) throws InvokeException {
+        return register(context, provider, invokerBridge,
+                Collections.singletonList(Registration.interfaces(serviceName, object, clazz, policy)),
+                object == null || clazz == null, false);
+    }
+
+    /**
+     * register/unregister services, in one transaction if batch. in the registering process, all services
+     * registered to the same provider are served by one stub, so the hub keeps one binder and one death
+     * link for this process instead of one for each name.
+     */
+    static boolean register(Context context, String provider, InvokerBridge invokerBridge,
+            List<Registration> registrations, boolean unregister, boolean batch)
+            throws InvokeException {
         if (invokerBridge instanceof InvokerStub.Stub) {
-            ((InvokerStub) invokerBridge).registerLocalService(serviceName, serviceFetcher);
+            for (Registration registration : registrations) {
+                registerLocal((InvokerStub) invokerBridge, registration, unregister);
+            }
             return true;
-        } else {
-            try {
-                InvokerStub stub = null;
-                if (serviceFetcher != null) {
-                    stub = new InvokerStub(context);
-                    stub.registerLocalService(serviceName, serviceFetcher);
+        }
+
+        InvokerStub stub = registrationStub(context, provider);
+        List<Bundle> params = new ArrayList<>(registrations.size());
+        // names new to this process are served before the provider routes them here,
+        // replaced ones after the provider accepts them, so that a failure can be rolled back
+        List<Registration> added = new ArrayList<>();
+        List<Registration> replaced = new ArrayList<>();
+        for (Registration registration : registrations) {
+            params.add(registration.toBundle());
+            if (unregister) {
+                continue;
+            }
+            if (stub.isRegisteredLocal(registration.name, registration.type)) {
+                replaced.add(registration);
+            } else {
+                registerLocal(stub, registration, false);
+                added.add(registration);
+            }
+        }
+
+        boolean registered = false;
+        try {
+            registered = publish(invokerBridge, stub, registrations, params, added, unregister, batch);
+            return registered;
+        } finally {
+            if (unregister) {
+                for (Registration registration : registrations) {
+                    registerLocal(stub, registration, true);
+                }
+            } else if (registered) {
+                for (Registration registration : replaced) {
+                    registerLocal(stub, registration, false);
+                }
+            } else {
+                for (Registration registration : added) {
+                    registerLocal(stub, registration, true);
                 }
-                return invokerBridge.register(serviceName, stub,
-                        buildRemoteParams(REMOTE_BRIDGE_TYPE_BINDER));
-            } catch (RemoteException e) {
-                throw new InvokeException(e);
             }
         }
     }
 
-    static boolean registerInvoker(Context context, InvokerBridge invokerBridge, String serviceName,
-            final IServiceFetcher<IInvoker> invokerFetcher) throws InvokeException {
-        if (invokerBridge instanceof InvokerStub.Stub) {
-            ((InvokerStub) invokerBridge).registerLocalInvoker(serviceName, invokerFetcher);
-            return true;
-        } else {
-            try {
-                InvokerStub stub = null;
-                if (invokerFetcher != null) {
-                    stub = new InvokerStub(context);
-                    stub.registerLocalInvoker(serviceName, invokerFetcher);
+    private static boolean publish(InvokerBridge invokerBridge, InvokerStub stub,
+            List<Registration> registrations, List<Bundle> params, List<Registration> added,
+            boolean unregister, boolean batch) throws InvokeException {
+        try {
+            if (batch) {
+                // the provider registers all of them or none
+                return invokerBridge.registerBatch(params, unregister ? null : stub);
+            }
+        } catch (RemoteException e) {
+            throw new InvokeException(e);
+        }
+
+        // hubs of old versions register one by one, new names are removed again on failure
+        int count = 0;
+        try {
+            for (Registration registration : registrations) {
+                if (!invokerBridge.register(registration.name, unregister ? null : stub,
+                        buildRemoteParams(registration.type))) {
+                    break;
                 }
-                return invokerBridge.register(serviceName, stub,
-                        buildRemoteParams(REMOTE_BRIDGE_TYPE_INVOKER));
-            } catch (RemoteException e) {
-                throw new InvokeException(e);
+                count++;
+            }
+        } catch (RemoteException e) {
+            throw new InvokeException(e);
+        } finally {
+            if (!unregister && count < registrations.size()) {
+                unpublish(invokerBridge, registrations.subList(0, count), added);
             }
         }
+        return count == registrations.size();
     }
 
-    static <T> boolean registerInterface(Context context, InvokerBridge invokerBridge, String serviceName,
-            T object, Class<T> clazz) throws InvokeException {
-        InterfaceInfo interfaceInfo = null;
-        if (object != null && clazz != null) {
-            interfaceInfo = new InterfaceInfo<T>(object, clazz);
+    private static void unpublish(InvokerBridge invokerBridge, List<Registration> registrations,
+            List<Registration> added) {
+        for (Registration registration : registrations) {
+            if (!added.contains(registration)) {
+                continue;
+            }
+            try {
+                invokerBridge.register(registration.name, null, buildRemoteParams(registration.type));
+            } catch (Exception e) {
+                LogUtil.w(TAG, "unpublish() error for " + registration.name, e);
+            }
         }
+    }
 
-        if (invokerBridge instanceof InvokerStub.Stub) {
-            ((InvokerStub) invokerBridge).registerLocalInterface(serviceName, interfaceInfo);
-            return true;
-        } else {
-            try {
-                InvokerStub stub = null;
-                if (object != null && clazz != null) {
-                    stub = new InvokerStub(context);
-                    stub.registerLocalInterface(serviceName, interfaceInfo);
-                }
-                return invokerBridge.register(serviceName, stub,
-                        buildRemoteParams(REMOTE_BRIDGE_TYPE_INTERFACE));
-            } catch (RemoteException e) {
-                throw new InvokeException(e);
+    /**
+     * register services of this process to a restarted provider again, on the same stub.
+     */
+    static void republish(String provider, InvokerBridge invokerBridge, boolean batch)
+            throws InvokeException {
+        InvokerStub stub;
+        synchronized (sRegistrationStubs) {
+            stub = sRegistrationStubs.get(provider);
+        }
+        if (stub == null || invokerBridge instanceof InvokerStub.Stub) {
+            return;
+        }
+
+        List<Bundle> params = stub.localRegistrations();
+        LogUtil.d(TAG, "republish() %d services to %s", params.size(), provider);
+        if (params.isEmpty()) {
+            return;
+        }
+        try {
+            if (batch) {
+                invokerBridge.registerBatch(params, stub);
+                return;
+            }
+
+            for (Bundle registration : params) {
+                invokerBridge.register(Registration.getName(registration), stub,
+                        buildRemoteParams(Registration.getType(registration)));
+            }
+        } catch (RemoteException e) {
+            throw new InvokeException(e);
+        }
+    }
+
+    private static InvokerStub registrationStub(Context context, String provider) {
+        synchronized (sRegistrationStubs) {
+            InvokerStub stub = sRegistrationStubs.get(provider);
+            if (stub == null) {
+                Context appContext = context.getApplicationContext();
+                stub = new InvokerStub(appContext != null ? appContext : context);
+                sRegistrationStubs.put(provider, stub);
             }
+            return stub;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void registerLocal(InvokerStub stub, Registration registration, boolean unregister) {
+        String serviceName = registration.name;
+        switch (registration.type) {
+            case ServiceEntry.TYPE_BINDER:
+                stub.registerLocalService(serviceName, unregister ? null : registration.serviceFetcher);
+                break;
+            case ServiceEntry.TYPE_INVOKER:
+                ServiceDispatcher dispatcher = !unregister && registration.policy != null ?
+                        registration.policy.createDispatcher(serviceName) : ServiceDispatcher.INLINE;
+                stub.registerLocalInvoker(serviceName, unregister ? null : registration.invokerFetcher,
+                        dispatcher);
+                break;
+            case ServiceEntry.TYPE_INTERFACE:
+                InterfaceInfo interfaceInfo = null;
+                if (!unregister) {
+                    interfaceInfo = new InterfaceInfo(registration.object, registration.clazz);
+                    if (registration.policy != null) {
+                        interfaceInfo.setDispatcher(registration.policy.createDispatcher(serviceName));
+                    }
+                }
+                stub.registerLocalInterface(serviceName, interfaceInfo);
+                break;
+            default:
+                throw new InvokeException(String.format("no valid type for %s", registration));
         }
     }
 
@@ -179,6 +357,8 @@ public class AndInvokerProvider extends ContentProvider {
                 new ConcurrentHashMap<>();
         private final Map<String, InterfaceInfo<?>> mRegisteredInterfaces =
                 new ConcurrentHashMap<>();
+        private final Map<String, ServiceDispatcher> mInvokerDispatchers =
+                new ConcurrentHashMap<>();
 
         private final Map<String, IInvoker> mLocalInvokerCacheMap = new ConcurrentHashMap<>();
         private final Map<String, BridgeRecord> mRemoteInvokerCacheMap = new ConcurrentHashMap<>();
@@ -186,6 +366,13 @@ public class AndInvokerProvider extends ContentProvider {
         private final Map<String, BridgeRecord> mRemoteBinderCacheMap = new ConcurrentHashMap<>();
         private final Map<String, InterfaceInfo<?>> mLocalInterfaceCacheMap = new ConcurrentHashMap<>();
         private final Map<String, BridgeRecord> mRemoteInterfaceCacheMap = new ConcurrentHashMap<>();
+        // bridge of the registering process -> death link shared by all of its services
+        private final Map<IBinder, OwnerLink> mOwnerLinks = new HashMap<>();
+
+        // clients watching changes of registered services
+        private final RemoteCallbackList<Call> mDirectoryWatchers = new RemoteCallbackList<>();
+        // notifies watchers in order without holding locks of registrations, created by the first watcher
+        private volatile ServiceDispatcher mDirectoryNotifier;
 
         private final Context mContext;
 
@@ -193,19 +380,41 @@ public class AndInvokerProvider extends ContentProvider {
             mContext = context;
         }
 
+        @Override
+        public boolean onTransact(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            // named by the called method
+            InvokeMetrics.Record record = InvokeMetrics.beginServer(data.dataSize());
+            try {
+                boolean handled = super.onTransact(code, data, reply, flags);
+                if (reply != null && (flags & IBinder.FLAG_ONEWAY) == 0) {
+                    InvokeMetrics.setReplyBytes(record, reply.dataSize());
+                }
+                return handled;
+            } catch (RemoteException e) {
+                InvokeMetrics.fail(record, e);
+                throw e;
+            } catch (RuntimeException e) {
+                InvokeMetrics.fail(record, e);
+                throw e;
+            } finally {
+                InvokeMetrics.end(record);
+            }
+        }
+
         private IServiceFetcher<IBinder> fetchLocalService(String serviceName) {
             LogUtil.d(TAG, "fetchLocalService() serviceName = %s", serviceName);
             if (serviceName == null) {
-                LogUtil.w(TAG, String.format("fetchLocalService() serviceName is Null! " +
-                        "for service %s", serviceName));
+                LogUtil.w(TAG, "fetchLocalService() serviceName is Null! " +
+                        "for service %s", serviceName);
                 return null;
             }
 
             IServiceFetcher serviceFetcher = mRegisteredServiceFetcher.get(serviceName);
 
             if (serviceFetcher == null) {
-                LogUtil.w(TAG, String.format("fetchLocalService() no serviceFetcher found for %s",
-                        serviceName));
+                LogUtil.w(TAG, "fetchLocalService() no serviceFetcher found for %s",
+                        serviceName);
             }
 
             return serviceFetcher;
@@ -214,14 +423,14 @@ public class AndInvokerProvider extends ContentProvider {
         private IInvoker fetchLocalInvoker(String serviceName) {
             LogUtil.d(TAG, "fetchLocalInvoker() serviceName = %s", serviceName);
             if (serviceName == null) {
-                LogUtil.w(TAG, String.format("fetchLocalInvoker() serviceName is Null! " +
-                        "for service %s", serviceName));
+                LogUtil.w(TAG, "fetchLocalInvoker() serviceName is Null! " +
+                        "for service %s", serviceName);
                 return null;
             }
 
             synchronized (mLocalInvokerCacheMap) {
                 IInvoker resultInvoker = mLocalInvokerCacheMap.get(serviceName);
-                LogUtil.w(TAG, String.format("fetchLocalInvoker() cached IInvoker = %s", resultInvoker));
+                LogUtil.d(TAG, "fetchLocalInvoker() cached IInvoker = %s", resultInvoker);
 
                 if (resultInvoker != null) {
                     LogUtil.d(TAG, "fetchLocalInvoker() serviceName = %s, get cached %s",
@@ -252,8 +461,8 @@ public class AndInvokerProvider extends ContentProvider {
                 }
             }
 
-            LogUtil.w(TAG, String.format("fetchLocalInvoker() no invoker found for %s",
-                    serviceName));
+            LogUtil.w(TAG, "fetchLocalInvoker() no invoker found for %s",
+                    serviceName);
 
             return null;
         }
@@ -261,8 +470,8 @@ public class AndInvokerProvider extends ContentProvider {
         private InterfaceInfo<?> fetchLocalInterface(String interfaceName) {
             LogUtil.d(TAG, "fetchLocalInterface() interfaceName = %s", interfaceName);
             if (interfaceName == null) {
-                LogUtil.w(TAG, String.format("fetchLocalInterface() serviceName is Null! " +
-                        "for interface %s", interfaceName));
+                LogUtil.w(TAG, "fetchLocalInterface() serviceName is Null! " +
+                        "for interface %s", interfaceName);
                 return null;
             }
 
@@ -288,8 +497,8 @@ public class AndInvokerProvider extends ContentProvider {
             LogUtil.d(TAG, "fetchRemoteBridge() name = %s, remoteBridges = %s",
                     name, remoteBridges);
             if (name == null || remoteBridges == null) {
-                LogUtil.w(TAG, String.format("fetchRemoteBridge() name or remoteBridges is Null! " +
-                        "for serviceName %s", name));
+                LogUtil.w(TAG, "fetchRemoteBridge() name or remoteBridges is Null! " +
+                        "for serviceName %s", name);
                 return null;
             }
 
@@ -298,8 +507,10 @@ public class AndInvokerProvider extends ContentProvider {
             synchronized (remoteBridges) {
                 BridgeRecord bridgeRecord = remoteBridges.get(name);
                 invokerBridge = bridgeRecord != null ? bridgeRecord.bridge : null;
-                LogUtil.w(TAG, String.format("fetchRemoteBridge() registered invokerBridge(size = %d) = %s",
-                        remoteBridges.size(), invokerBridge));
+                if (LogUtil.LOG_ENABLED) {
+                    LogUtil.d(TAG, "fetchRemoteBridge() registered invokerBridge(size = %d) = %s",
+                            remoteBridges.size(), invokerBridge);
+                }
             }
 
             if (invokerBridge != null) {
@@ -311,26 +522,18 @@ public class AndInvokerProvider extends ContentProvider {
                 }
             }
 
-            LogUtil.w(TAG, String.format("fetchRemoteBridge() no bridge found for %s",
-                    name));
+            LogUtil.w(TAG, "fetchRemoteBridge() no bridge found for %s",
+                    name);
 
             return null;
         }
 
-        @Override
-        public IBinder fetchService(String serviceName, Bundle params) throws RemoteException {
-            if (serviceName == null) {
-                LogUtil.w(TAG,
-                        String.format("fetchService() serviceName is Null! for %s", serviceName));
-                throw new InvokeException(String.format("no valid serviceName for %s", serviceName));
-            }
-
+        private IBinder fetchLocalBinder(String serviceName) {
             IBinder cachedBinder = fetchCachedBinder(serviceName);
             if (cachedBinder != null) {
                 return cachedBinder;
             }
 
-            // fetch local
             synchronized (mLocalBinderCacheMap) {
                 cachedBinder = fetchCachedBinder(serviceName);
                 if (cachedBinder != null) {
@@ -340,7 +543,7 @@ public class AndInvokerProvider extends ContentProvider {
                 IServiceFetcher<IBinder> serviceFetcher = fetchLocalService(serviceName);
                 if (serviceFetcher != null) {
                     LogUtil.w(TAG,
-                            String.format("fetchService() NOT found for %s", serviceName));
+                            "fetchService() NOT found for %s", serviceName);
 
                     IBinder newBinder = serviceFetcher.onFetchService(mContext);
                     if (newBinder != null) {
@@ -353,10 +556,35 @@ public class AndInvokerProvider extends ContentProvider {
                 }
             }
 
+            return null;
+        }
+
+        @Override
+        public IBinder fetchService(String serviceName, Bundle params) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_FETCH_SERVICE, null);
+            if (serviceName == null) {
+                LogUtil.w(TAG,
+                        "fetchService() serviceName is Null! for %s", serviceName);
+                throw new InvokeException(String.format("no valid serviceName for %s", serviceName));
+            }
+
+            // fetch local
+            IBinder localBinder = fetchLocalBinder(serviceName);
+            if (localBinder != null) {
+                InvokeMetrics.nameServer(serviceName);
+                return localBinder;
+            }
+
             // fetch remote
             InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteBinderCacheMap);
             if (invokerBridge != null) {
-                return invokerBridge.fetchService(serviceName, null);
+                InvokeMetrics.nameServer(serviceName);
+                ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_FORWARD, serviceName);
+                try {
+                    return invokerBridge.fetchService(serviceName, null);
+                } finally {
+                    InvokeTrace.end(tracer);
+                }
             }
 
             throw new InvokeException(String.format("no binder service found for %s",
@@ -366,94 +594,562 @@ public class AndInvokerProvider extends ContentProvider {
         @Override
         public Bundle invoke(String serviceName, String methodName,
                 Bundle params, Call callback) throws RemoteException {
+            return invokeInternal(serviceName, methodName, params, callback, false);
+        }
+
+        @Override
+        public Bundle invokeDirect(String serviceName, String methodName,
+                Bundle params, Call callback) throws RemoteException {
+            return invokeInternal(serviceName, methodName, params, callback, true);
+        }
+
+        // direct invokes come from clients routed to this owner, never forward them again
+        private Bundle invokeInternal(String serviceName, String methodName,
+                Bundle params, Call callback, boolean direct) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_INVOKE, null);
             // fetch local
             IInvoker iInvoker = fetchLocalInvoker(serviceName);
             if (iInvoker != null) {
-                ICall iInvokeCallback = CallWrapper.build(callback);
+                InvokeMetrics.nameServer(serviceName);
+                boolean remoteCall = Binder.getCallingPid() != Process.myPid();
+                ServiceDispatcher dispatcher = dispatcherOf(serviceName);
+                Bundle result;
+                if (dispatcher.isInline()) {
+                    result = invokeDispatched(dispatcher, iInvoker, serviceName, methodName, params,
+                            callback, false);
+                } else if (remoteCall) {
+                    // the client invokes again by invokeAsync, so this binder thread is NOT pinned
+                    return ServiceDispatcher.dispatchedResult();
+                } else {
+                    // local callers wait, calls from the service's own thread run directly
+                    result = invokeDispatched(dispatcher, iInvoker, serviceName, methodName, params,
+                            callback, false);
+                }
 
-                Bundle result =
-                        iInvoker.onInvoke(mContext, methodName, params, iInvokeCallback);
+                if (remoteCall) {
+                    result = LargePayload.pack(result);
+                }
                 return result;
             }
 
+            if (direct) {
+                // the client asks the hub again, the invoke did NOT run here
+                return noInvokerResult();
+            }
+
             // fetch remote
             InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
             if (invokerBridge != null) {
-                Bundle result = invokerBridge.invoke(serviceName, methodName, params, callback);
-                return result;
+                InvokeMetrics.nameServer(serviceName);
+                ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_FORWARD, serviceName, methodName);
+                try {
+                    return invokerBridge.invoke(serviceName, methodName, params, callback);
+                } finally {
+                    InvokeTrace.end(tracer);
+                }
             }
 
-            LogUtil.e(TAG, String.format(
+            LogUtil.e(TAG,
                     "invoke() service = %s, method = %s, params = %s, callback = %s NOT found!",
-                    serviceName, methodName, params, callback));
+                    serviceName, methodName, params, callback);
+
+            throw noInvokerError(serviceName);
+        }
+
+        @Override
+        public void invokeAsync(final String serviceName, final String methodName, final Bundle params,
+                final Call callback, final Call resultCallback) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_INVOKE_ASYNC, null);
+            try {
+                // fetch local
+                final IInvoker iInvoker = fetchLocalInvoker(serviceName);
+                if (iInvoker != null) {
+                    InvokeMetrics.nameServer(serviceName);
+                    int priority = ServiceDispatcher.priorityOf(iInvoker.getClass());
+                    dispatcherOf(serviceName).execute(priority, new Runnable() {
+                        @Override
+                        public void run() {
+                            Bundle result;
+                            try {
+                                result = InvokeResult.success(LargePayload.pack(
+                                        invokeLocal(iInvoker, serviceName, methodName, params, callback)));
+                            } catch (Throwable t) {
+                                LogUtil.w(TAG, "invokeAsync() invoke error for " + serviceName, t);
+                                result = InvokeResult.error(t);
+                            }
+                            deliverAsyncResult(serviceName, resultCallback, result);
+                        }
+                    });
+                    return;
+                }
+
+                // fetch remote, the result is relayed so that the caller knows if remote dies
+                InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
+                if (invokerBridge != null) {
+                    InvokeMetrics.nameServer(serviceName);
+                    ForwardedResult forwardedResult = resultCallback == null ? null :
+                            new ForwardedResult(serviceName, resultCallback, invokerBridge.asBinder());
+                    if (forwardedResult != null && !forwardedResult.link()) {
+                        throw new InvokeException("owner of " + serviceName + " is dead!");
+                    }
+                    ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_FORWARD, serviceName, methodName);
+                    try {
+                        invokerBridge.invokeAsync(serviceName, methodName, params, callback,
+                                forwardedResult);
+                    } catch (RemoteException e) {
+                        LogUtil.w(TAG, "invokeAsync() forward error for " + serviceName, e);
+                        if (forwardedResult != null) {
+                            forwardedResult.onCall(InvokeResult.error(e));
+                        }
+                    } finally {
+                        InvokeTrace.end(tracer);
+                    }
+                    return;
+                }
+
+                throw noInvokerError(serviceName);
+            } catch (Throwable t) {
+                LogUtil.w(TAG, "invokeAsync() invoke error for " + serviceName, t);
+                deliverAsyncResult(serviceName, resultCallback, InvokeResult.error(t));
+            }
+        }
+
+        private Bundle invokeLocal(IInvoker iInvoker, String serviceName, String methodName,
+                Bundle params, Call callback) {
+            ICall iInvokeCallback = CallWrapper.build(callback);
+            ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_DISPATCH, serviceName, methodName);
+            try {
+                return iInvoker.onInvoke(mContext, methodName, params, iInvokeCallback);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+        }
+
+        // remote callers which need the result in the reply fail fast instead of queueing
+        private Bundle invokeDispatched(ServiceDispatcher dispatcher, final IInvoker iInvoker,
+                final String serviceName, final String methodName, final Bundle params,
+                final Call callback, boolean remoteCall) {
+            if (dispatcher == ServiceDispatcher.INLINE) {
+                return invokeLocal(iInvoker, serviceName, methodName, params, callback);
+            }
+            int priority = ServiceDispatcher.priorityOf(iInvoker.getClass());
+            Callable<Bundle> callable = new Callable<Bundle>() {
+                @Override
+                public Bundle call() {
+                    return invokeLocal(iInvoker, serviceName, methodName, params, callback);
+                }
+            };
+            return remoteCall ? dispatcher.callIfIdle(priority, callable) :
+                    dispatcher.call(priority, callable);
+        }
+
+        private void deliverAsyncResult(String serviceName, Call resultCallback, Bundle result) {
+            if (resultCallback != null) {
+                try {
+                    resultCallback.onCallAsync(result);
+                } catch (RemoteException e) {
+                    LogUtil.w(TAG, "invokeAsync() result callback error for " + serviceName, e);
+                }
+            }
+        }
+
+        @Override
+        public boolean probeDispatched(String serviceName) throws RemoteException {
+            if (serviceName == null) {
+                return false;
+            }
+            if (mRegisteredIInvokerFetcher.containsKey(serviceName)) {
+                return !dispatcherOf(serviceName).isInline();
+            }
+            InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
+            return invokerBridge != null && invokerBridge.probeDispatched(serviceName);
+        }
+
+        private ServiceDispatcher dispatcherOf(String serviceName) {
+            ServiceDispatcher dispatcher = serviceName != null ? mInvokerDispatchers.get(serviceName) : null;
+            return dispatcher != null ? dispatcher : ServiceDispatcher.INLINE;
+        }
+
+        @Override
+        public Stream invokeStream(String serviceName, String methodName, Bundle params,
+                Call callback, IBinder clientToken) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_INVOKE_STREAM, null);
+            // fetch local
+            IInvoker iInvoker = fetchLocalInvoker(serviceName);
+            if (iInvoker != null) {
+                InvokeMetrics.nameServer(serviceName);
+                if (!(iInvoker instanceof IStreamInvoker)) {
+                    throw new InvokeException(String.format("invoker %s is NOT an IStreamInvoker",
+                            serviceName));
+                }
+
+                ICall iInvokeCallback = CallWrapper.build(callback);
+                IResultStream resultStream = ((IStreamInvoker) iInvoker).onInvokeStream(
+                        mContext, methodName, params, iInvokeCallback);
+                return StreamStub.build(resultStream, clientToken);
+            }
+
+            // fetch remote, the stream is pulled from remote directly
+            InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
+            if (invokerBridge != null) {
+                InvokeMetrics.nameServer(serviceName);
+                return invokerBridge.invokeStream(serviceName, methodName, params, callback, clientToken);
+            }
+
+            throw noInvokerError(serviceName);
+        }
+
+        @Override
+        public List<Bundle> invokeBatch(List<Bundle> requests) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_INVOKE_BATCH, null);
+            if (requests == null) {
+                throw new InvokeException("no valid requests for invokeBatch");
+            }
+
+            if (LogUtil.LOG_ENABLED) {
+                LogUtil.d(TAG, "invokeBatch() requests size = %d", requests.size());
+            }
+
+            final int size = requests.size();
+            final boolean remoteCall = Binder.getCallingPid() != Process.myPid();
+            List<Bundle> results = new ArrayList<>(size);
+            // requests forwarded to the same remote bridge are batched again
+            Map<IBinder, RemoteBatch> remoteBatches = null;
+
+            for (int i = 0; i < size; i++) {
+                Bundle request = requests.get(i);
+                results.add(null);
 
-            throw new InvokeException(String.format("no invoker found for %s", serviceName));
+                if (request == null) {
+                    results.set(i, InvokeResult.error(new InvokeException("request is null")));
+                    continue;
+                }
+
+                String serviceName = null;
+                try {
+                    // set before any getter, the bundle is unparceled by the first one
+                    request.setClassLoader(AndInvoker.class.getClassLoader());
+                    serviceName = InvokeRequest.getServiceName(request);
+
+                    // fetch local
+                    IInvoker iInvoker = fetchLocalInvoker(serviceName);
+                    if (iInvoker != null) {
+                        ServiceDispatcher dispatcher = dispatcherOf(serviceName);
+                        if (remoteCall && !dispatcher.isInline() && InvokeRequest.acceptsHandoff(request)) {
+                            // the client invokes it again by invokeAsync, so this binder thread is NOT pinned
+                            results.set(i, ServiceDispatcher.dispatchedResult());
+                            continue;
+                        }
+                        Bundle result = invokeDispatched(dispatcher, iInvoker,
+                                serviceName, InvokeRequest.getMethodName(request),
+                                InvokeRequest.getParams(request), InvokeRequest.getCallback(request),
+                                remoteCall);
+                        results.set(i, InvokeResult.success(result));
+                        continue;
+                    }
+
+                    // fetch remote
+                    InvokerBridge invokerBridge = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
+                    if (invokerBridge != null) {
+                        if (remoteBatches == null) {
+                            remoteBatches = new HashMap<>();
+                        }
+                        IBinder remoteBinder = invokerBridge.asBinder();
+                        RemoteBatch remoteBatch = remoteBatches.get(remoteBinder);
+                        if (remoteBatch == null) {
+                            remoteBatch = new RemoteBatch(invokerBridge);
+                            remoteBatches.put(remoteBinder, remoteBatch);
+                        }
+                        remoteBatch.add(i, request);
+                        continue;
+                    }
+
+                    results.set(i, InvokeResult.error(noInvokerError(serviceName)));
+                } catch (Throwable t) {
+                    LogUtil.w(TAG, "invokeBatch() invoke error for " + serviceName, t);
+                    results.set(i, InvokeResult.error(t));
+                }
+            }
+
+            if (remoteBatches != null) {
+                for (RemoteBatch remoteBatch : remoteBatches.values()) {
+                    remoteBatch.invoke(results);
+                }
+            }
+
+            return results;
         }
 
         @Override
         public Bundle fetchInterface(String interfaceName) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_FETCH_INTERFACE, null);
             LogUtil.d(TAG, "fetchInterface() interfaceName = %s", interfaceName);
             if (interfaceName == null) {
-                LogUtil.w(TAG, String.format("fetchInterface() serviceName is Null!"));
+                LogUtil.w(TAG, "fetchInterface() serviceName is Null!");
                 return null;
             }
 
             InterfaceInfo<?> interfaceInfo = fetchLocalInterface(interfaceName);
             if (interfaceInfo != null) {
+                InvokeMetrics.nameServer(interfaceName);
                 Bundle result = new Bundle();
                 Call call = interfaceInfo.fetchStub();
                 if (call != null) {
-                    result.putParcelable("binder", new InterfaceParcelable(call.asBinder()));
+                    result.putParcelable("binder", new InterfaceParcelable(call.asBinder(),
+                            interfaceInfo.methodSignatures()));
                     return result;
                 }
             }
 
             InvokerBridge invokerBridge = fetchRemoteBridge(interfaceName, mRemoteInterfaceCacheMap);
             if (invokerBridge != null) {
-                return invokerBridge.fetchInterface(interfaceName);
+                InvokeMetrics.nameServer(interfaceName);
+                ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_FORWARD, interfaceName);
+                try {
+                    return invokerBridge.fetchInterface(interfaceName);
+                } finally {
+                    InvokeTrace.end(tracer);
+                }
             }
 
             throw new InvokeException(String.format("no interface found for %s", interfaceName));
         }
 
+        @Override
+        public InvokerBridge resolveOwner(String serviceName) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_RESOLVE_OWNER, null);
+            if (serviceName == null) {
+                return null;
+            }
+            if (mRegisteredIInvokerFetcher.containsKey(serviceName)) {
+                // served by this process
+                InvokeMetrics.nameServer(serviceName);
+                return null;
+            }
+
+            // clients invoke the registering process directly, instead of being forwarded by this one
+            InvokerBridge owner = fetchRemoteBridge(serviceName, mRemoteInvokerCacheMap);
+            if (owner != null) {
+                InvokeMetrics.nameServer(serviceName);
+            }
+            LogUtil.d(TAG, "resolveOwner() serviceName = %s, owner = %s", serviceName, owner);
+            return owner;
+        }
+
+        @Override
+        public List<Bundle> fetchDirectory(Call watcher) throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_FETCH_DIRECTORY, null);
+            if (watcher != null) {
+                synchronized (mDirectoryWatchers) {
+                    if (mDirectoryNotifier == null) {
+                        mDirectoryNotifier = ServiceDispatcher.create("directory", 1);
+                    }
+                }
+                // watch before the snapshot, so that NO change is missed
+                mDirectoryWatchers.register(watcher);
+            }
+
+            // names only, services are fetched lazily when they are used
+            List<Bundle> entries = new ArrayList<>();
+            for (String serviceName : mRegisteredServiceFetcher.keySet()) {
+                entries.add(localEntry(serviceName, ServiceEntry.TYPE_BINDER).toBundle());
+            }
+            for (String serviceName : mRegisteredIInvokerFetcher.keySet()) {
+                entries.add(localEntry(serviceName, ServiceEntry.TYPE_INVOKER).toBundle());
+            }
+            for (String serviceName : mRegisteredInterfaces.keySet()) {
+                entries.add(localEntry(serviceName, ServiceEntry.TYPE_INTERFACE).toBundle());
+            }
+
+            addRemoteEntries(entries, mRemoteBinderCacheMap, mRegisteredServiceFetcher);
+            addRemoteEntries(entries, mRemoteInvokerCacheMap, mRegisteredIInvokerFetcher);
+            addRemoteEntries(entries, mRemoteInterfaceCacheMap, mRegisteredInterfaces);
+
+            LogUtil.d(TAG, "fetchDirectory() %d entries, watcher = %s", entries.size(), watcher);
+            return entries;
+        }
+
+        @Override
+        public void unwatchDirectory(Call watcher) throws RemoteException {
+            if (watcher != null) {
+                mDirectoryWatchers.unregister(watcher);
+            }
+        }
+
+        private ServiceEntry localEntry(String serviceName, int type) {
+            return new ServiceEntry(serviceName, type, Process.myPid(), false, asBinder());
+        }
+
+        private static ServiceEntry remoteEntry(BridgeRecord bridgeRecord) {
+            return new ServiceEntry(bridgeRecord.serviceName, bridgeRecord.bridgeType, bridgeRecord.pid,
+                    true, bridgeRecord.bridge.asBinder());
+        }
+
+        private static void addRemoteEntries(List<Bundle> entries, Map<String, BridgeRecord> remoteBridges,
+                Map<String, ?> localRegistered) {
+            for (BridgeRecord bridgeRecord : remoteBridges.values()) {
+                // local ones are looked up first
+                if (localRegistered.containsKey(bridgeRecord.serviceName)) {
+                    continue;
+                }
+                IBinder owner = bridgeRecord.bridge.asBinder();
+                if (owner != null && owner.isBinderAlive()) {
+                    entries.add(remoteEntry(bridgeRecord).toBundle());
+                }
+            }
+        }
+
+        private void notifyDirectoryChanged(final ServiceEntry entry, boolean removed) {
+            ServiceDispatcher notifier = mDirectoryNotifier;
+            if (notifier == null) {
+                // never watched
+                return;
+            }
+
+            final Bundle event = entry.toEventBundle(removed);
+            notifier.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int count = mDirectoryWatchers.beginBroadcast();
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            try {
+                                mDirectoryWatchers.getBroadcastItem(i).onCallAsync(event);
+                            } catch (Throwable t) {
+                                LogUtil.w(TAG, t, "notifyDirectoryChanged() error for %s", entry);
+                            }
+                        }
+                    } finally {
+                        mDirectoryWatchers.finishBroadcast();
+                    }
+                }
+            });
+        }
+
         @Override
         public boolean register(final String serviceName, InvokerBridge bridge, Bundle params)
                 throws RemoteException {
-            if (serviceName == null) {
-                LogUtil.w(TAG,
-                        String.format("register() serviceName is Null! for %s", serviceName));
-                throw new InvokeException(String.format("no valid serviceName for %s", serviceName));
+            InvokeMetrics.tagServer(InvokeMetrics.OP_REGISTER, null);
+            int bridgeType = params != null ? params.getInt(KEY_REMOTE_BRIDGE_TYPE, -1) : -1;
+            boolean registered = registerRemote(serviceName, bridgeType, bridge, getCallingPid(),
+                    getCallingUid(), null);
+            if (registered) {
+                InvokeMetrics.nameServer(serviceName);
+            }
+            return registered;
+        }
+
+        @Override
+        public boolean registerBatch(List<Bundle> registrations, InvokerBridge bridge)
+                throws RemoteException {
+            InvokeMetrics.tagServer(InvokeMetrics.OP_REGISTER_BATCH, null);
+            if (registrations == null) {
+                throw new InvokeException("no valid registrations!");
             }
             int callingPid = getCallingPid();
             int callingUid = getCallingUid();
 
-            Map<String, BridgeRecord> remoteBridge = null;
-            int bridgeType = -1;
+            // check all before registering any of them
+            for (Bundle registration : registrations) {
+                if (registration == null || Registration.getName(registration) == null
+                        || getBridgeMap(Registration.getType(registration)) == null) {
+                    throw new InvokeException(String.format("no valid registration for %s",
+                            registration));
+                }
+            }
+
+            // all of them or none, the replaced ones are restored on failure
+            List<BridgeRecord[]> changes = new ArrayList<>(registrations.size());
+            boolean registered = false;
+            try {
+                for (Bundle registration : registrations) {
+                    registerRemote(Registration.getName(registration), Registration.getType(registration),
+                            bridge, callingPid, callingUid, changes);
+                }
+                registered = true;
+            } finally {
+                if (!registered) {
+                    rollback(changes);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * undo changes of registerRemote() in reverse order
+         * @param changes pairs of the record added and the record replaced or removed
+         */
+        private void rollback(List<BridgeRecord[]> changes) {
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                BridgeRecord added = changes.get(i)[0];
+                BridgeRecord old = changes.get(i)[1];
+                BridgeRecord record = added != null ? added : old;
+                Map<String, BridgeRecord> remoteBridge = getBridgeMap(record.bridgeType);
+                synchronized (remoteBridge) {
+                    BridgeRecord current = remoteBridge.get(record.serviceName);
+                    if (current != added) {
+                        // changed by others since
+                        continue;
+                    }
+                    if (added != null) {
+                        remoteBridge.remove(added.serviceName);
+                        added.unlinkToDeath();
+                        notifyDirectoryChanged(remoteEntry(added), true);
+                    }
+                    if (old != null) {
+                        try {
+                            old.linkToDeath();
+                            remoteBridge.put(old.serviceName, old);
+                            notifyDirectoryChanged(remoteEntry(old), false);
+                        } catch (RemoteException e) {
+                            LogUtil.w(TAG, "rollback() owner of %s died", old.serviceName);
+                        }
+                    }
+                }
+            }
+        }
 
-            if (params != null) {
-                bridgeType = params.getInt(KEY_REMOTE_BRIDGE_TYPE, -1);
-                remoteBridge = getBridgeMap(bridgeType);
+        private boolean registerRemote(String serviceName, int bridgeType, InvokerBridge bridge,
+                int callingPid, int callingUid, List<BridgeRecord[]> changes) throws RemoteException {
+            if (serviceName == null) {
+                LogUtil.w(TAG,
+                        "register() serviceName is Null! for %s", serviceName);
+                throw new InvokeException(String.format("no valid serviceName for %s", serviceName));
             }
 
+            Map<String, BridgeRecord> remoteBridge = getBridgeMap(bridgeType);
+
             if (remoteBridge == null) {
                 LogUtil.w(TAG,
-                        String.format("register() remoteBridge is Null! for %s", serviceName));
+                        "register() remoteBridge is Null! for %s", serviceName);
                 throw new InvokeException(String.format("no valid remoteBridge found for %s", serviceName));
             }
 
             LogUtil.d(TAG,
-                    String.format("register() serviceName = %s, remoteBridgeMap = %s, bridge = %s, params = %s",
-                            serviceName, remoteBridge, bridge, params));
+                    "register() serviceName = %s, remoteBridgeMap = %s, bridge = %s, bridgeType = %d",
+                    serviceName, remoteBridge, bridge, bridgeType);
 
             synchronized (remoteBridge) {
                 if (bridge == null) {
                     // remove remote registered ONLY
-                    remoteBridge.remove(serviceName);
+                    BridgeRecord oldBridge = remoteBridge.remove(serviceName);
+                    if (oldBridge != null) {
+                        oldBridge.unlinkToDeath();
+                        notifyDirectoryChanged(remoteEntry(oldBridge), true);
+                        if (changes != null) {
+                            changes.add(new BridgeRecord[]{null, oldBridge});
+                        }
+                    }
                     return true;
                 } else {
                     final IBinder iBinder = bridge.asBinder();
                     if (iBinder != null) {
-                        // remove old bridge first
+                        // link new bridge first, so that the death link of the same owner is kept
+                        BridgeRecord br = new BridgeRecord(serviceName, bridge, bridgeType,
+                                callingPid, callingUid);
+                        br.linkToDeath();
+
+                        // remove old bridge
                         BridgeRecord oldBridge = remoteBridge.remove(serviceName);
                         if (oldBridge != null) {
                             oldBridge.unlinkToDeath();
@@ -462,10 +1158,11 @@ public class AndInvokerProvider extends ContentProvider {
                         }
 
                         // add new bridge
-                        BridgeRecord br = new BridgeRecord(serviceName, bridge, bridgeType,
-                                callingPid, callingUid);
-                        br.linkToDeath();
                         remoteBridge.put(serviceName, br);
+                        notifyDirectoryChanged(remoteEntry(br), false);
+                        if (changes != null) {
+                            changes.add(new BridgeRecord[]{br, oldBridge});
+                        }
                         return true;
                     }
                 }
@@ -474,6 +1171,33 @@ public class AndInvokerProvider extends ContentProvider {
             throw new InvokeException(String.format("remote register error for %s!", serviceName));
         }
 
+        private boolean isRegisteredLocal(String serviceName, int type) {
+            switch (type) {
+                case ServiceEntry.TYPE_BINDER:
+                    return mRegisteredServiceFetcher.containsKey(serviceName);
+                case ServiceEntry.TYPE_INVOKER:
+                    return mRegisteredIInvokerFetcher.containsKey(serviceName);
+                case ServiceEntry.TYPE_INTERFACE:
+                    return mRegisteredInterfaces.containsKey(serviceName);
+                default:
+                    return false;
+            }
+        }
+
+        private List<Bundle> localRegistrations() {
+            List<Bundle> registrations = new ArrayList<>();
+            for (String serviceName : mRegisteredServiceFetcher.keySet()) {
+                registrations.add(Registration.toBundle(serviceName, ServiceEntry.TYPE_BINDER));
+            }
+            for (String serviceName : mRegisteredIInvokerFetcher.keySet()) {
+                registrations.add(Registration.toBundle(serviceName, ServiceEntry.TYPE_INVOKER));
+            }
+            for (String serviceName : mRegisteredInterfaces.keySet()) {
+                registrations.add(Registration.toBundle(serviceName, ServiceEntry.TYPE_INTERFACE));
+            }
+            return registrations;
+        }
+
         private Map<String, BridgeRecord> getBridgeMap(int bridgeType) {
             if (bridgeType == REMOTE_BRIDGE_TYPE_BINDER) {
                 return mRemoteBinderCacheMap;
@@ -487,86 +1211,134 @@ public class AndInvokerProvider extends ContentProvider {
         }
 
         private void registerLocalService(String serviceName, IServiceFetcher<IBinder> serviceFetcher) {
-            if (serviceFetcher == null) {
-                mRegisteredServiceFetcher.remove(serviceName);
-
-                // remove remote registered
-                synchronized (mRemoteBinderCacheMap) {
-                    mRemoteBinderCacheMap.remove(serviceName);
-                }
-
-                // remove binder service registered
-                synchronized (mLocalBinderCacheMap) {
-                    mLocalBinderCacheMap.remove(serviceName);
+            // swap the fetcher and drop the cached binder together, a new fetcher must not
+            // be served the binder of the old one
+            synchronized (mLocalBinderCacheMap) {
+                if (serviceFetcher == null) {
+                    mRegisteredServiceFetcher.remove(serviceName);
+                } else {
+                    mRegisteredServiceFetcher.put(serviceName, serviceFetcher);
                 }
-
-            } else {
-                mRegisteredServiceFetcher.put(serviceName, serviceFetcher);
+                mLocalBinderCacheMap.remove(serviceName);
             }
+            removeRemoteBridge(mRemoteBinderCacheMap, serviceName);
+            notifyDirectoryChanged(localEntry(serviceName, ServiceEntry.TYPE_BINDER),
+                    serviceFetcher == null);
 
             LogUtil.d(TAG, "registerLocalService() for serviceName = %s, serviceFetcher = %s",
                     serviceName, serviceFetcher);
         }
 
-        private void registerLocalInvoker(String serviceName, IServiceFetcher<IInvoker> serviceFetcher) {
-            if (serviceFetcher == null) {
-                // remove local registered
-                synchronized (mLocalInvokerCacheMap) {
-                    mLocalInvokerCacheMap.remove(serviceName);
-                }
-                mRegisteredIInvokerFetcher.remove(serviceName);
-
-                // remove remote registered
-                synchronized (mRemoteInvokerCacheMap) {
-                    mRemoteInvokerCacheMap.remove(serviceName);
+        private void registerLocalInvoker(String serviceName, IServiceFetcher<IInvoker> serviceFetcher,
+                ServiceDispatcher dispatcher) {
+            ServiceDispatcher oldDispatcher;
+            synchronized (mLocalInvokerCacheMap) {
+                oldDispatcher = serviceFetcher == null || dispatcher == ServiceDispatcher.INLINE ?
+                        mInvokerDispatchers.remove(serviceName) :
+                        mInvokerDispatchers.put(serviceName, dispatcher);
+                if (serviceFetcher == null) {
+                    mRegisteredIInvokerFetcher.remove(serviceName);
+                } else {
+                    mRegisteredIInvokerFetcher.put(serviceName, serviceFetcher);
                 }
-            } else {
-                mRegisteredIInvokerFetcher.put(serviceName, serviceFetcher);
+                mLocalInvokerCacheMap.remove(serviceName);
             }
+            if (oldDispatcher != null) {
+                oldDispatcher.shutdown();
+            }
+            removeRemoteBridge(mRemoteInvokerCacheMap, serviceName);
+            notifyDirectoryChanged(localEntry(serviceName, ServiceEntry.TYPE_INVOKER),
+                    serviceFetcher == null);
 
-            LogUtil.d(TAG, "registerLocalInvoker() for serviceName = %s, serviceFetcher = %s",
-                    serviceName, serviceFetcher);
+            LogUtil.d(TAG, "registerLocalInvoker() for serviceName = %s, serviceFetcher = %s, dispatcher = %s",
+                    serviceName, serviceFetcher, dispatcher);
         }
 
         private void registerLocalInterface(String serviceName, InterfaceInfo<?> interfaceInfo) {
-            if (interfaceInfo == null) {
-                mRegisteredInterfaces.remove(serviceName);
-
-                // remove local registered
-                synchronized (mLocalInterfaceCacheMap) {
-                    mLocalInterfaceCacheMap.remove(serviceName);
-                }
-
-                // remove remote registered
-                synchronized (mRemoteInterfaceCacheMap) {
-                    mRemoteInterfaceCacheMap.remove(serviceName);
-                }
-            } else {
-                mRegisteredInterfaces.put(serviceName, interfaceInfo);
+            InterfaceInfo<?> oldInterfaceInfo;
+            // the cached info holds the old dispatcher, which is shut down below
+            synchronized (mLocalInterfaceCacheMap) {
+                oldInterfaceInfo = interfaceInfo == null ?
+                        mRegisteredInterfaces.remove(serviceName) :
+                        mRegisteredInterfaces.put(serviceName, interfaceInfo);
+                mLocalInterfaceCacheMap.remove(serviceName);
+            }
+            if (oldInterfaceInfo != null) {
+                oldInterfaceInfo.dispatcher().shutdown();
             }
+            removeRemoteBridge(mRemoteInterfaceCacheMap, serviceName);
+            notifyDirectoryChanged(localEntry(serviceName, ServiceEntry.TYPE_INTERFACE),
+                    interfaceInfo == null);
 
             LogUtil.d(TAG, "registerLocalInterface() for serviceName = %s, interfaceInfo = %s",
                     serviceName, interfaceInfo);
         }
 
+        /**
+         * a local registration replaces whatever was registered remotely under the same name.
+         */
+        private void removeRemoteBridge(Map<String, BridgeRecord> bridgeMap, String serviceName) {
+            synchronized (bridgeMap) {
+                BridgeRecord oldBridge = bridgeMap.remove(serviceName);
+                if (oldBridge != null) {
+                    oldBridge.unlinkToDeath();
+                    notifyDirectoryChanged(remoteEntry(oldBridge), true);
+                }
+            }
+        }
+
         private IBinder fetchCachedBinder(String serviceName) {
             IBinder cachedBinder = mLocalBinderCacheMap.get(serviceName);
             if (cachedBinder != null) {
-                LogUtil.w(TAG, String.format("fetchCachedBinder() cached binder = %s", cachedBinder));
+                LogUtil.w(TAG, "fetchCachedBinder() cached binder = %s", cachedBinder);
                 return cachedBinder;
             }
 
             return null;
         }
 
+        private static class RemoteBatch {
+            private final InvokerBridge mBridge;
+            private final List<Integer> mIndexes = new ArrayList<>();
+            private final List<Bundle> mRequests = new ArrayList<>();
+
+            RemoteBatch(InvokerBridge bridge) {
+                mBridge = bridge;
+            }
+
+            void add(int index, Bundle request) {
+                mIndexes.add(index);
+                mRequests.add(request);
+            }
+
+            void invoke(List<Bundle> results) {
+                List<Bundle> remoteResults = null;
+                Throwable error = null;
+                try {
+                    remoteResults = mBridge.invokeBatch(mRequests);
+                } catch (Throwable t) {
+                    error = t;
+                }
+
+                if (error == null && (remoteResults == null || remoteResults.size() != mRequests.size())) {
+                    error = new InvokeException("remote batch results mismatch!");
+                }
+
+                for (int i = 0; i < mIndexes.size(); i++) {
+                    results.set(mIndexes.get(i),
+                            error == null ? remoteResults.get(i) : InvokeResult.error(error));
+                }
+            }
+        }
+
         private class BridgeRecord {
             public final String serviceName;
             public final InvokerBridge bridge;
             public final int pid;
             public final int uid;
             public final int bridgeType;
-            public IBinder iBinder;
-            private BinderDeath mBd;
+            public final IBinder iBinder;
+            private OwnerLink mLink;
 
             public BridgeRecord(String serviceName, InvokerBridge invokerBridge, int bridgeType,
                     int callingPid, int callingUid) {
@@ -579,20 +1351,29 @@ public class AndInvokerProvider extends ContentProvider {
             }
 
             public void linkToDeath() throws RemoteException {
-                synchronized (this) {
-                    if (iBinder != null && mBd == null) {
-                        mBd = new BinderDeath(this);
-                        iBinder.linkToDeath(mBd, 0);
+                synchronized (mOwnerLinks) {
+                    if (mLink == null) {
+                        OwnerLink link = mOwnerLinks.get(iBinder);
+                        if (link == null) {
+                            link = new OwnerLink(iBinder);
+                            iBinder.linkToDeath(link, 0);
+                            mOwnerLinks.put(iBinder, link);
+                        }
+                        link.mRecords.add(this);
+                        mLink = link;
                     }
                 }
             }
 
             public void unlinkToDeath() {
-                synchronized (this) {
-                    if (iBinder != null && mBd != null) {
-                        iBinder.unlinkToDeath(mBd, 0);
-                        iBinder = null;
-                        mBd = null;
+                synchronized (mOwnerLinks) {
+                    if (mLink != null) {
+                        mLink.mRecords.remove(this);
+                        if (mLink.mRecords.isEmpty() && mOwnerLinks.get(iBinder) == mLink) {
+                            mOwnerLinks.remove(iBinder);
+                            iBinder.unlinkToDeath(mLink, 0);
+                        }
+                        mLink = null;
                     }
                 }
             }
@@ -607,37 +1388,92 @@ public class AndInvokerProvider extends ContentProvider {
                     return super.toString();
                 }
             }
+        }
 
-            private class BinderDeath implements IBinder.DeathRecipient {
-                private final BridgeRecord mBr;
+        /**
+         * relays the result of an invokeAsync forwarded to the owner, or an error if the owner dies
+         */
+        private class ForwardedResult extends CallWrapper implements IBinder.DeathRecipient {
+            private final String mServiceName;
+            private final Call mResultCallback;
+            private final IBinder mOwner;
+            private final AtomicBoolean mDelivered = new AtomicBoolean(false);
+
+            ForwardedResult(String serviceName, Call resultCallback, IBinder owner) {
+                mServiceName = serviceName;
+                mResultCallback = resultCallback;
+                mOwner = owner;
+            }
 
-                BinderDeath(BridgeRecord br) {
-                    mBr = br;
+            boolean link() {
+                try {
+                    mOwner.linkToDeath(this, 0);
+                    return true;
+                } catch (RemoteException e) {
+                    return false;
                 }
+            }
 
-                public void binderDied() {
-                    synchronized (mBr) {
-                        if (mBr.iBinder == null) {
-                            return;
-                        }
+            @Override
+            public Bundle onCall(Bundle result) {
+                if (mDelivered.compareAndSet(false, true)) {
+                    mOwner.unlinkToDeath(this, 0);
+                    deliverAsyncResult(mServiceName, mResultCallback, result);
+                }
+                return null;
+            }
 
-                        mBr.iBinder.unlinkToDeath(this, 0);
-                        mBr.iBinder = null;
+            @Override
+            public void binderDied() {
+                onCall(InvokeResult.error(new InvokeException(
+                        "owner of " + mServiceName + " died before the result is delivered!")));
+            }
+        }
+
+        /**
+         * one death link for all services registered by the same bridge
+         */
+        private class OwnerLink implements IBinder.DeathRecipient {
+            private final IBinder mOwner;
+            private final Set<BridgeRecord> mRecords = new HashSet<>();
+
+            OwnerLink(IBinder owner) {
+                mOwner = owner;
+            }
 
-                        onRemoteBridgeDied(mBr);
+            public void binderDied() {
+                List<BridgeRecord> deadRecords;
+                synchronized (mOwnerLinks) {
+                    if (mOwnerLinks.get(mOwner) != this) {
+                        return;
+                    }
+                    mOwnerLinks.remove(mOwner);
+                    mOwner.unlinkToDeath(this, 0);
+                    deadRecords = new ArrayList<>(mRecords);
+                    for (BridgeRecord record : deadRecords) {
+                        record.mLink = null;
                     }
+                    mRecords.clear();
+                }
+
+                for (BridgeRecord record : deadRecords) {
+                    onRemoteBridgeDied(record);
                 }
             }
         }
 
         private void onRemoteBridgeDied(BridgeRecord bridgeRecord) {
-            LogUtil.w(TAG, "onRemoteBridgeDied() bridgeRecord = " + bridgeRecord);
+            LogUtil.w(TAG, "onRemoteBridgeDied() bridgeRecord = %s", bridgeRecord);
 
             Map<String, BridgeRecord> map = getBridgeMap(bridgeRecord.bridgeType);
 
             if (map != null) {
                 synchronized (map) {
-                    map.remove(bridgeRecord.serviceName);
+                    // may be registered again by another bridge
+                    if (map.get(bridgeRecord.serviceName) == bridgeRecord) {
+                        map.remove(bridgeRecord.serviceName);
+                        notifyDirectoryChanged(remoteEntry(bridgeRecord), true);
+                    }
                 }
             }
         }
@@ -0,0 +1,122 @@
+package com.reginald.andinvoker;
+
+import com.reginald.andinvoker.internal.ServiceDispatcher;
+
+/**
+ * where a registered IInvoker/interface runs, see
+ * {@link AndInvoker#registerInvoker(android.content.Context, String, String, com.reginald.andinvoker.api.IInvoker, DispatchPolicy)}.
+ * with a non-inline policy, binder threads only hand off the work,
+ * so slow services do NOT exhaust the binder thread pool of the host process.
+ * sync calls of remote interfaces need the result in the binder reply and can NOT be handed off,
+ * they run only if a thread of the service is free, and fail fast with {@link OverloadedException} otherwise.
+ * with {@link #withLimits(int, int)}, calls beyond the limits fail fast with {@link OverloadedException}.
+ */
+public final class DispatchPolicy {
+    private static final int TYPE_INLINE = 0;
+    private static final int TYPE_EXECUTOR = 1;
+    private static final int TYPE_SERIAL = 2;
+    private static final int TYPE_SHARED = 3;
+
+    public static final int UNLIMITED = ServiceDispatcher.UNLIMITED;
+
+    /**
+     * run on the binder thread, by default.
+     */
+    public static final DispatchPolicy INLINE = new DispatchPolicy(TYPE_INLINE, 0, UNLIMITED, UNLIMITED);
+
+    private final int mType;
+    private final int mMaxThreads;
+    private final int mMaxConcurrent;
+    private final int mMaxQueued;
+
+    /**
+     * run on a dedicated executor of the service
+     * @param maxThreads max threads of the executor
+     * @return policy
+     */
+    public static DispatchPolicy executor(int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxThreads must be positive!");
+        }
+        return new DispatchPolicy(TYPE_EXECUTOR, maxThreads, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * run one by one in order on a dedicated thread of the service
+     * @return policy
+     */
+    public static DispatchPolicy serial() {
+        return new DispatchPolicy(TYPE_SERIAL, 1, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * run on an executor shared by all services of this process with this policy,
+     * calls of {@link com.reginald.andinvoker.api.Priority#HIGH} services are served first.
+     * @return policy
+     */
+    public static DispatchPolicy shared() {
+        return new DispatchPolicy(TYPE_SHARED, 0, UNLIMITED, UNLIMITED);
+    }
+
+    private DispatchPolicy(int type, int maxThreads, int maxConcurrent, int maxQueued) {
+        mType = type;
+        mMaxThreads = maxThreads;
+        mMaxConcurrent = maxConcurrent;
+        mMaxQueued = maxQueued;
+    }
+
+    /**
+     * bound calls of the service, calls beyond the limits fail fast with {@link OverloadedException}.
+     * inline calls are NOT queued, so only maxConcurrent applies to them.
+     * with {@link #shared()}, at most maxConcurrent calls of the service take threads of the
+     * shared executor, the others wait in a queue of the service.
+     * @param maxConcurrent max calls running at the same time, or {@link #UNLIMITED}
+     * @param maxQueued max calls waiting to run, or {@link #UNLIMITED}
+     * @return policy with the limits
+     */
+    public DispatchPolicy withLimits(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive!");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued must NOT be negative!");
+        }
+        return new DispatchPolicy(mType, mMaxThreads, maxConcurrent, maxQueued);
+    }
+
+    public boolean isInline() {
+        return mType == TYPE_INLINE;
+    }
+
+    ServiceDispatcher createDispatcher(String serviceName) {
+        switch (mType) {
+            case TYPE_INLINE:
+                return ServiceDispatcher.inline(serviceName, mMaxConcurrent);
+            case TYPE_SHARED:
+                return ServiceDispatcher.shared(serviceName, mMaxConcurrent, mMaxQueued);
+            default:
+                return ServiceDispatcher.create(serviceName, mMaxThreads, mMaxConcurrent, mMaxQueued);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String limits = mMaxConcurrent == UNLIMITED && mMaxQueued == UNLIMITED ? "" :
+                String.format(", maxConcurrent = %s, maxQueued = %s",
+                        limitString(mMaxConcurrent), limitString(mMaxQueued));
+        switch (mType) {
+            case TYPE_EXECUTOR:
+                return "DispatchPolicy[executor(" + mMaxThreads + ")" + limits + "]";
+            case TYPE_SERIAL:
+                return "DispatchPolicy[serial" + limits + "]";
+            case TYPE_SHARED:
+                return "DispatchPolicy[shared" + limits + "]";
+            default:
+                return "DispatchPolicy[inline" + limits + "]";
+        }
+    }
+
+    private static String limitString(int limit) {
+        return limit == UNLIMITED ? "unlimited" : String.valueOf(limit);
+    }
+}
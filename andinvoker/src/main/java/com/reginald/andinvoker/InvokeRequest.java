@@ -0,0 +1,79 @@
+package com.reginald.andinvoker;
+
+import android.os.Bundle;
+
+import com.reginald.andinvoker.api.ICall;
+import com.reginald.andinvoker.internal.BinderParcelable;
+import com.reginald.andinvoker.internal.Call;
+import com.reginald.andinvoker.internal.CallWrapper;
+
+/**
+ * one IInvoker invocation of a batch, see {@link AndInvoker#invokeBatch}
+ */
+public class InvokeRequest {
+    private static final String KEY_SERVICE_NAME = "ai_service";
+    private static final String KEY_METHOD_NAME = "ai_method";
+    private static final String KEY_PARAMS = "ai_params";
+    private static final String KEY_CALLBACK = "ai_callback";
+    private static final String KEY_HANDOFF = "ai_handoff";
+
+    public final String serviceName;
+    public final String methodName;
+    public final Bundle params;
+    public final ICall callback;
+
+    /**
+     * @param serviceName serviceName
+     * @param methodName methodName
+     * @param params params
+     * @param callback callback
+     */
+    public InvokeRequest(String serviceName, String methodName, Bundle params, ICall callback) {
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.params = params;
+        this.callback = callback;
+    }
+
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(KEY_SERVICE_NAME, serviceName);
+        bundle.putString(KEY_METHOD_NAME, methodName);
+        bundle.putBundle(KEY_PARAMS, params);
+        Call call = CallWrapper.build(callback);
+        if (call != null) {
+            bundle.putParcelable(KEY_CALLBACK, new BinderParcelable(call.asBinder()));
+        }
+        // results of dispatched services may be answered with a marker, and invoked again by invokeAsync
+        bundle.putBoolean(KEY_HANDOFF, true);
+        return bundle;
+    }
+
+    static String getServiceName(Bundle request) {
+        return request.getString(KEY_SERVICE_NAME);
+    }
+
+    static String getMethodName(Bundle request) {
+        return request.getString(KEY_METHOD_NAME);
+    }
+
+    static Bundle getParams(Bundle request) {
+        return request.getBundle(KEY_PARAMS);
+    }
+
+    static boolean acceptsHandoff(Bundle request) {
+        return request.getBoolean(KEY_HANDOFF, false);
+    }
+
+    static Call getCallback(Bundle request) {
+        request.setClassLoader(AndInvoker.class.getClassLoader());
+        BinderParcelable binderParcelable = request.getParcelable(KEY_CALLBACK);
+        return binderParcelable != null ? Call.Stub.asInterface(binderParcelable.iBinder) : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InvokeRequest[ serviceName = %s, methodName = %s, params = %s, callback = %s ]",
+                serviceName, methodName, params, callback);
+    }
+}
@@ -0,0 +1,83 @@
+package com.reginald.andinvoker;
+
+import android.os.Bundle;
+
+import com.reginald.andinvoker.internal.LargePayload;
+
+/**
+ * result of one IInvoker invocation of a batch, see {@link AndInvoker#invokeBatch}
+ */
+public class InvokeResult {
+    private static final String KEY_RESULT = "ai_result";
+    private static final String KEY_ERROR = "ai_error";
+    // retry-after of an OverloadedException, errors are restored as overloads only by this key
+    private static final String KEY_OVERLOADED = "ai_overloaded";
+
+    private final Bundle mResult;
+    private final InvokeException mError;
+
+    InvokeResult(Bundle result, InvokeException error) {
+        mResult = result;
+        mError = error;
+    }
+
+    /**
+     * @return whether the invocation succeeds
+     */
+    public boolean isSuccess() {
+        return mError == null;
+    }
+
+    /**
+     * @return result returned by IInvoker, null if fails
+     */
+    public Bundle getResult() {
+        return mResult;
+    }
+
+    /**
+     * @return error of the invocation, null if succeeds
+     */
+    public InvokeException getError() {
+        return mError;
+    }
+
+    static Bundle success(Bundle result) {
+        Bundle bundle = new Bundle();
+        bundle.putBundle(KEY_RESULT, result);
+        return bundle;
+    }
+
+    static Bundle error(Throwable t) {
+        Bundle bundle = new Bundle();
+        OverloadedException overloaded = OverloadedException.from(t);
+        if (overloaded != null) {
+            bundle.putString(KEY_ERROR, overloaded.getMessage());
+            bundle.putLong(KEY_OVERLOADED, overloaded.getRetryAfterMillis());
+        } else {
+            bundle.putString(KEY_ERROR, String.valueOf(t));
+        }
+        return bundle;
+    }
+
+    static InvokeResult fromBundle(Bundle bundle) {
+        if (bundle == null) {
+            return new InvokeResult(null, new InvokeException("no result returned!"));
+        }
+
+        String error = bundle.getString(KEY_ERROR);
+        if (error != null) {
+            return new InvokeResult(null, bundle.containsKey(KEY_OVERLOADED) ?
+                    new OverloadedException(error, bundle.getLong(KEY_OVERLOADED)) :
+                    new InvokeException(error));
+        }
+
+        // results of async invokes may be passed as large payloads
+        return new InvokeResult(LargePayload.unpack(bundle.getBundle(KEY_RESULT)), null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InvokeResult[ result = %s, error = %s ]", mResult, mError);
+    }
+}
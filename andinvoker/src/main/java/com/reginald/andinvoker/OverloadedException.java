@@ -0,0 +1,70 @@
+package com.reginald.andinvoker;
+
+/**
+ * Invoke Exception thrown without running the call, if the service has reached
+ * the limits of its {@link DispatchPolicy}. the caller may retry after {@link #getRetryAfterMillis()}.
+ */
+public class OverloadedException extends InvokeException {
+    // exceptions lose their types through binder, the message starts with this code and the retry-after
+    private static final String CODE_PREFIX = "[ai_overloaded:";
+    private static final char CODE_END = ']';
+
+    private final long mRetryAfterMillis;
+
+    public OverloadedException(String serviceName, int callsInFlight, long retryAfterMillis) {
+        this(String.format("%s%d%c service %s overloaded with %d calls in flight, retry after %d ms",
+                CODE_PREFIX, retryAfterMillis, CODE_END, serviceName, callsInFlight, retryAfterMillis),
+                retryAfterMillis);
+    }
+
+    OverloadedException(String message, long retryAfterMillis) {
+        super(message);
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return suggested delay before retrying
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    /**
+     * restore an OverloadedException passed through binder. the type is restored only from
+     * the error of a binder call itself, whose message starts with the overload code.
+     * @param t error caught from the call
+     * @return OverloadedException, or null if t is NOT an overload
+     */
+    public static OverloadedException from(Throwable t) {
+        // binder writes an IllegalStateException with the message of the remote exception
+        if (t != null && t.getClass() == IllegalStateException.class) {
+            OverloadedException restored = fromMessage(t.getMessage());
+            if (restored != null) {
+                return restored;
+            }
+        }
+        while (t != null) {
+            if (t instanceof OverloadedException) {
+                return (OverloadedException) t;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    private static OverloadedException fromMessage(String message) {
+        if (message == null || !message.startsWith(CODE_PREFIX)) {
+            return null;
+        }
+        int codeEnd = message.indexOf(CODE_END, CODE_PREFIX.length());
+        if (codeEnd < 0) {
+            return null;
+        }
+        try {
+            return new OverloadedException(message,
+                    Long.parseLong(message.substring(CODE_PREFIX.length(), codeEnd)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
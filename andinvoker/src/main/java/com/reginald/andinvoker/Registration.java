@@ -0,0 +1,195 @@
+package com.reginald.andinvoker;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.IBinder;
+
+import com.reginald.andinvoker.api.IInvoker;
+import com.reginald.andinvoker.api.IServiceFetcher;
+import com.reginald.andinvoker.internal.LogUtil;
+
+/**
+ * one binder service/IInvoker/interface of a bulk registration, see {@link AndInvoker#register}
+ */
+public class Registration {
+    private static final String TAG = "Registration";
+
+    private static final String KEY_NAME = "ai_name";
+    private static final String KEY_TYPE = "ai_type";
+
+    public final String name;
+    // one of ServiceEntry.TYPE_BINDER, TYPE_INVOKER, TYPE_INTERFACE
+    public final int type;
+
+    final IServiceFetcher<IBinder> serviceFetcher;
+    final IServiceFetcher<IInvoker> invokerFetcher;
+    final Object object;
+    final Class<?> clazz;
+    final DispatchPolicy policy;
+
+    private Registration(String name, int type, IServiceFetcher<IBinder> serviceFetcher,
+            IServiceFetcher<IInvoker> invokerFetcher, Object object, Class<?> clazz,
+            DispatchPolicy policy) {
+        if (name == null) {
+            throw new InvokeException("no valid serviceName for registration!");
+        }
+        this.name = name;
+        this.type = type;
+        this.serviceFetcher = serviceFetcher;
+        this.invokerFetcher = invokerFetcher;
+        this.object = object;
+        this.clazz = clazz;
+        this.policy = policy;
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param serviceFetcher instance of IServiceFetcher
+     * @return registration of a binder service
+     */
+    public static Registration service(String serviceName, IServiceFetcher<IBinder> serviceFetcher) {
+        return new Registration(serviceName, ServiceEntry.TYPE_BINDER, serviceFetcher, null,
+                null, null, null);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param binder binder service
+     * @return registration of a binder service
+     */
+    public static Registration service(String serviceName, final IBinder binder) {
+        return service(serviceName, binder == null ? null : new IServiceFetcher<IBinder>() {
+            @Override
+            public IBinder onFetchService(Context context) {
+                return binder;
+            }
+        });
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invokerFetcher instance of IServiceFetcher
+     * @param policy where invokes run in the registering process, see {@link DispatchPolicy}
+     * @return registration of an IInvoker
+     */
+    public static Registration invoker(String serviceName, IServiceFetcher<IInvoker> invokerFetcher,
+            DispatchPolicy policy) {
+        return new Registration(serviceName, ServiceEntry.TYPE_INVOKER, null, invokerFetcher,
+                null, null, policy);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invokerFetcher instance of IServiceFetcher
+     * @return registration of an IInvoker
+     */
+    public static Registration invoker(String serviceName, IServiceFetcher<IInvoker> invokerFetcher) {
+        return invoker(serviceName, invokerFetcher, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invoker instance of IInvoker
+     * @param policy where invokes run in the registering process, see {@link DispatchPolicy}
+     * @return registration of an IInvoker
+     */
+    public static Registration invoker(String serviceName, final IInvoker invoker,
+            DispatchPolicy policy) {
+        return invoker(serviceName, invoker == null ? null : new IServiceFetcher<IInvoker>() {
+            @Override
+            public IInvoker onFetchService(Context context) {
+                return invoker;
+            }
+        }, policy);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param invoker instance of IInvoker
+     * @return registration of an IInvoker
+     */
+    public static Registration invoker(String serviceName, IInvoker invoker) {
+        return invoker(serviceName, invoker, DispatchPolicy.INLINE);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param iInvokerClass type of IInvoker
+     * @return registration of an IInvoker
+     */
+    public static Registration invoker(String serviceName, final Class<? extends IInvoker> iInvokerClass) {
+        return invoker(serviceName, iInvokerClass == null ? null : new IServiceFetcher<IInvoker>() {
+            @Override
+            public IInvoker onFetchService(Context context) {
+                try {
+                    return iInvokerClass.newInstance();
+                } catch (Exception e) {
+                    LogUtil.e(TAG, "invoker() new Instance error!", e);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param object instance of interface
+     * @param clazz interface annotated with {@link com.reginald.andinvoker.api.RemoteInterface}
+     * @param policy where calls run in the registering process, see {@link DispatchPolicy}
+     * @return registration of an interface
+     */
+    public static <T> Registration interfaces(String serviceName, T object, Class<T> clazz,
+            DispatchPolicy policy) {
+        return new Registration(serviceName, ServiceEntry.TYPE_INTERFACE, null, null,
+                object, clazz, policy);
+    }
+
+    /**
+     * @param serviceName serviceName  e.g. ${your_package_name}.serviceA
+     * @param object instance of interface
+     * @param clazz interface annotated with {@link com.reginald.andinvoker.api.RemoteInterface}
+     * @return registration of an interface
+     */
+    public static <T> Registration interfaces(String serviceName, T object, Class<T> clazz) {
+        return interfaces(serviceName, object, clazz, null);
+    }
+
+    boolean isEmpty() {
+        switch (type) {
+            case ServiceEntry.TYPE_BINDER:
+                return serviceFetcher == null;
+            case ServiceEntry.TYPE_INVOKER:
+                return invokerFetcher == null;
+            default:
+                return object == null || clazz == null;
+        }
+    }
+
+    Bundle toBundle() {
+        return toBundle(name, type);
+    }
+
+    static Bundle toBundle(String name, int type) {
+        Bundle bundle = new Bundle();
+        bundle.putString(KEY_NAME, name);
+        bundle.putInt(KEY_TYPE, type);
+        return bundle;
+    }
+
+    static String getName(Bundle registration) {
+        return registration.getString(KEY_NAME);
+    }
+
+    static int getType(Bundle registration) {
+        return registration.getInt(KEY_TYPE, -1);
+    }
+
+    @Override
+    public String toString() {
+        if (LogUtil.LOG_ENABLED) {
+            return String.format("Registration[ name = %s, type = %d ]", name, type);
+        } else {
+            return super.toString();
+        }
+    }
+}
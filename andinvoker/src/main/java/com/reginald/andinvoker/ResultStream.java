@@ -0,0 +1,104 @@
+package com.reginald.andinvoker;
+
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.RemoteException;
+
+import com.reginald.andinvoker.internal.LargePayload;
+import com.reginald.andinvoker.internal.LogUtil;
+import com.reginald.andinvoker.internal.Stream;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * results of {@link com.reginald.andinvoker.api.IStreamInvoker}, pulled from the remote in chunks.
+ * the next chunk is requested only after the current one is consumed,
+ * and the remote stream is released by {@link #close()} if NOT read to the end.
+ */
+public final class ResultStream implements Iterator<Bundle>, Closeable {
+    private static final String TAG = "ResultStream";
+
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    private final Stream mStream;
+    private final int mChunkSize;
+    // linked by the remote stream for the death of this process
+    private final Binder mToken;
+
+    private List<Bundle> mChunk;
+    private int mIndex;
+    private boolean mEnded;
+
+    ResultStream(Stream stream, Binder token, int chunkSize) {
+        mStream = stream;
+        mToken = token;
+        mChunkSize = chunkSize;
+        mEnded = stream == null;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (mChunk != null && mIndex < mChunk.size()) {
+            return true;
+        }
+
+        if (mEnded) {
+            return false;
+        }
+
+        try {
+            mChunk = mStream.pull(mChunkSize);
+            mIndex = 0;
+        } catch (RemoteException e) {
+            mEnded = true;
+            throw new InvokeException(e);
+        } catch (RuntimeException e) {
+            mEnded = true;
+            throw new InvokeException(e);
+        }
+
+        if (mChunk == null || mChunk.isEmpty()) {
+            mEnded = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Bundle next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Bundle item = mChunk.get(mIndex);
+        // release consumed items
+        mChunk.set(mIndex++, null);
+        return LargePayload.unpack(item);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * cancel the remote stream if NOT ended.
+     */
+    @Override
+    public synchronized void close() {
+        mChunk = null;
+        if (mEnded) {
+            return;
+        }
+
+        mEnded = true;
+        try {
+            mStream.cancel();
+        } catch (RemoteException e) {
+            LogUtil.w(TAG, "close() cancel error!", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.reginald.andinvoker;
+
+import android.os.Bundle;
+import android.os.IBinder;
+
+import com.reginald.andinvoker.internal.BinderParcelable;
+
+/**
+ * binder service/IInvoker/interface registered in a provider, see {@link AndInvoker#fetchDirectory}
+ */
+public class ServiceEntry {
+    public static final int TYPE_BINDER = 1;
+    public static final int TYPE_INVOKER = 2;
+    public static final int TYPE_INTERFACE = 3;
+
+    private static final String KEY_NAME = "ai_name";
+    private static final String KEY_TYPE = "ai_type";
+    private static final String KEY_PID = "ai_pid";
+    private static final String KEY_REMOTE = "ai_remote";
+    private static final String KEY_OWNER = "ai_owner";
+    private static final String KEY_REMOVED = "ai_removed";
+
+    public final String name;
+    // one of TYPE_BINDER, TYPE_INVOKER, TYPE_INTERFACE
+    public final int type;
+    // pid of the process which serves it
+    public final int pid;
+    // whether registered by another process than the provider
+    public final boolean remote;
+
+    // bridge of the serving process
+    final IBinder owner;
+
+    ServiceEntry(String name, int type, int pid, boolean remote, IBinder owner) {
+        this.name = name;
+        this.type = type;
+        this.pid = pid;
+        this.remote = remote;
+        this.owner = owner;
+    }
+
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(KEY_NAME, name);
+        bundle.putInt(KEY_TYPE, type);
+        bundle.putInt(KEY_PID, pid);
+        bundle.putBoolean(KEY_REMOTE, remote);
+        if (owner != null) {
+            bundle.putParcelable(KEY_OWNER, new BinderParcelable(owner));
+        }
+        return bundle;
+    }
+
+    /**
+     * change of the directory. owners of removed entries may be dead.
+     * @param removed whether the entry is removed
+     * @return event
+     */
+    Bundle toEventBundle(boolean removed) {
+        Bundle bundle = new ServiceEntry(name, type, pid, remote, removed ? null : owner).toBundle();
+        bundle.putBoolean(KEY_REMOVED, removed);
+        return bundle;
+    }
+
+    static boolean isRemovedEvent(Bundle bundle) {
+        return bundle != null && bundle.getBoolean(KEY_REMOVED, false);
+    }
+
+    static ServiceEntry fromBundle(Bundle bundle) {
+        if (bundle == null) {
+            return null;
+        }
+        bundle.setClassLoader(AndInvoker.class.getClassLoader());
+        BinderParcelable owner = bundle.getParcelable(KEY_OWNER);
+        return new ServiceEntry(bundle.getString(KEY_NAME), bundle.getInt(KEY_TYPE),
+                bundle.getInt(KEY_PID, -1), bundle.getBoolean(KEY_REMOTE),
+                owner != null ? owner.iBinder : null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServiceEntry[ name = %s, type = %d, pid = %d, remote = %s ]",
+                name, type, pid, remote);
+    }
+}
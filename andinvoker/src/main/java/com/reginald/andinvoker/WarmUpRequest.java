@@ -0,0 +1,50 @@
+package com.reginald.andinvoker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * services/interfaces of one provider to be fetched in advance, see {@link AndInvoker#warmUp}
+ */
+public class WarmUpRequest {
+    public final String provider;
+
+    final List<String> services = new ArrayList<>();
+    final Map<String, Class<?>> interfaces = new LinkedHashMap<>();
+
+    /**
+     * @param provider authorities of ContentProvider
+     */
+    public WarmUpRequest(String provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * fetch binder service in advance
+     * @param serviceName serviceName
+     * @return this request
+     */
+    public WarmUpRequest addService(String serviceName) {
+        services.add(serviceName);
+        return this;
+    }
+
+    /**
+     * fetch interface in advance
+     * @param interfaceName interface name
+     * @param localInterface interface class
+     * @return this request
+     */
+    public WarmUpRequest addInterface(String interfaceName, Class<?> localInterface) {
+        interfaces.put(interfaceName, localInterface);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WarmUpRequest[ provider = %s, services = %s, interfaces = %s ]",
+                provider, services, interfaces.keySet());
+    }
+}
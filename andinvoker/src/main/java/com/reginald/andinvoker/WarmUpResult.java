@@ -0,0 +1,34 @@
+package com.reginald.andinvoker;
+
+import java.util.List;
+
+/**
+ * warm-up result of one provider, see {@link AndInvoker#warmUp}
+ */
+public class WarmUpResult {
+    public final String provider;
+    // whether the provider is connected
+    public final boolean connected;
+    // time cost of connecting the provider
+    public final long connectTimeMillis;
+    // time cost of connecting the provider and fetching all services/interfaces
+    public final long totalTimeMillis;
+    // services/interfaces failed to fetch
+    public final List<String> failedNames;
+
+    WarmUpResult(String provider, boolean connected, long connectTimeMillis, long totalTimeMillis,
+            List<String> failedNames) {
+        this.provider = provider;
+        this.connected = connected;
+        this.connectTimeMillis = connectTimeMillis;
+        this.totalTimeMillis = totalTimeMillis;
+        this.failedNames = failedNames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WarmUpResult[ provider = %s, connected = %s, connectTimeMillis = %d, " +
+                        "totalTimeMillis = %d, failedNames = %s ]",
+                provider, connected, connectTimeMillis, totalTimeMillis, failedNames);
+    }
+}
@@ -10,7 +10,9 @@ import java.lang.annotation.Annotation;
 public interface Decoder<R, S> {
 
     /**
-     * check whether the object can be handled by this Decoder
+     * check whether the object can be handled by this Decoder.
+     * the result is cached for the same class of obj, clazz and annotation types,
+     * so it should NOT depend on the value of obj.
      * @param obj remote serialized object
      * @param clazz desired src class type
      * @param annotations annotation of parameter in method.
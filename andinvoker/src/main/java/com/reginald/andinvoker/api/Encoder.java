@@ -9,7 +9,8 @@ import java.lang.annotation.Annotation;
  */
 public interface Encoder<S, R> {
     /**
-     * check whether the src can be handled by this Encoder
+     * check whether the src can be handled by this Encoder.
+     * the result is cached for the same clazz and annotation types, so it should NOT depend on src.
      * @param src src object
      * @param clazz src class type
      * @param annotations annotation of parameter in method.
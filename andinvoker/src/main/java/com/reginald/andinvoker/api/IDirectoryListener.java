@@ -0,0 +1,16 @@
+package com.reginald.andinvoker.api;
+
+import com.reginald.andinvoker.ServiceEntry;
+
+/**
+ * listener of services registered in a provider
+ */
+public interface IDirectoryListener {
+    /**
+     * called in order when a service is registered or unregistered, or the process registering it dies.
+     * called on a binder thread, or a background thread if the provider runs in this process.
+     * @param entry entry {@link ServiceEntry}
+     * @param removed whether the entry is removed
+     */
+    void onServiceChanged(ServiceEntry entry, boolean removed);
+}
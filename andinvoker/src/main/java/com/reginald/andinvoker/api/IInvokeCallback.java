@@ -0,0 +1,14 @@
+package com.reginald.andinvoker.api;
+
+import com.reginald.andinvoker.InvokeResult;
+
+/**
+ * result callback of async invoke
+ */
+public interface IInvokeCallback {
+    /**
+     * called when the async invoke finishes or fails
+     * @param result invoke result {@link InvokeResult}
+     */
+    void onInvokeResult(InvokeResult result);
+}
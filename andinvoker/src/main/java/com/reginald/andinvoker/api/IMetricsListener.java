@@ -0,0 +1,25 @@
+package com.reginald.andinvoker.api;
+
+/**
+ * listener of ipc call metrics, see {@link com.reginald.andinvoker.AndInvoker#setMetricsListener(IMetricsListener)}
+ */
+public interface IMetricsListener {
+    /**
+     * payload size is unknown, e.g. the call is in the same process or parcels are NOT accessible.
+     */
+    long UNKNOWN_BYTES = -1;
+
+    /**
+     * called on the calling thread when a call finishes, so keep it fast.
+     * @param side "client" or "server"
+     * @param operation e.g. "invoke", "fetchService", "fetchInterface", "interface"
+     * @param provider authorities of ContentProvider, null on server side
+     * @param name service/interface name, or interface method for "interface"
+     * @param durationNanos duration in nanoseconds
+     * @param requestBytes request parcel size or {@link #UNKNOWN_BYTES}
+     * @param replyBytes reply parcel size or {@link #UNKNOWN_BYTES}
+     * @param error error or null if succeeds
+     */
+    void onCallFinished(String side, String operation, String provider, String name,
+            long durationNanos, long requestBytes, long replyBytes, Throwable error);
+}
@@ -0,0 +1,19 @@
+package com.reginald.andinvoker.api;
+
+import android.os.Bundle;
+
+/**
+ * Result stream api of {@link IStreamInvoker}
+ */
+public interface IResultStream {
+    /**
+     * produce the next item, called one at a time when the caller pulls.
+     * @return next item, or null if the stream ends
+     */
+    Bundle next();
+
+    /**
+     * release the stream, called once when it ends, or is cancelled by the caller, or the caller dies.
+     */
+    void close();
+}
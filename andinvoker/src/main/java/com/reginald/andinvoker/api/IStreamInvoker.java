@@ -0,0 +1,20 @@
+package com.reginald.andinvoker.api;
+
+import android.content.Context;
+import android.os.Bundle;
+
+/**
+ * IInvoker api with streaming results, which are pulled by the caller in chunks.
+ */
+public interface IStreamInvoker extends IInvoker {
+    /**
+     * open a result stream for your remote methods here.
+     * items are produced only when the caller pulls them.
+     * @param context Context
+     * @param methodName methodName
+     * @param params parameters
+     * @param callback remote callback {@link ICall}
+     * @return result stream {@link IResultStream}
+     */
+    IResultStream onInvokeStream(Context context, String methodName, Bundle params, ICall callback);
+}
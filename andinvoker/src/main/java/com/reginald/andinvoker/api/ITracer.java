@@ -0,0 +1,17 @@
+package com.reginald.andinvoker.api;
+
+/**
+ * tracer of ipc call sections, see {@link com.reginald.andinvoker.AndInvoker#setTracer(ITracer)}
+ */
+public interface ITracer {
+    /**
+     * begin a section on the current thread, sections are nested.
+     * @param name section name, e.g. "AI:invoke service.method"
+     */
+    void beginSection(String name);
+
+    /**
+     * end the last section begun on the current thread.
+     */
+    void endSection();
+}
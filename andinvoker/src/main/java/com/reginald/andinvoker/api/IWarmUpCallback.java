@@ -0,0 +1,14 @@
+package com.reginald.andinvoker.api;
+
+import com.reginald.andinvoker.WarmUpResult;
+
+/**
+ * warm-up callback
+ */
+public interface IWarmUpCallback {
+    /**
+     * called on a background thread when the warm-up of a provider finishes
+     * @param result warm-up result {@link WarmUpResult}
+     */
+    void onWarmUp(WarmUpResult result);
+}
@@ -0,0 +1,20 @@
+package com.reginald.andinvoker.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Idempotent Annotation for {@link RemoteInterface} types and methods.
+ * with {@link com.reginald.andinvoker.AndInvoker#setResilientEnabled(boolean)}, calls failed by the death of
+ * the remote are retried on the rebound remote, so they may run more than once.
+ */
+@Documented
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+public @interface Idempotent {
+}
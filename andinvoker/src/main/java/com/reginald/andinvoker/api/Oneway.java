@@ -0,0 +1,19 @@
+package com.reginald.andinvoker.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Oneway Annotation for void methods of {@link RemoteInterface}.
+ * the caller returns immediately without waiting for the remote method,
+ * and exceptions thrown by the remote method are NOT delivered to the caller.
+ */
+@Documented
+@Target({METHOD})
+@Retention(RUNTIME)
+public @interface Oneway {
+}
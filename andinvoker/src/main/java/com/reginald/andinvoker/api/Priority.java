@@ -0,0 +1,28 @@
+package com.reginald.andinvoker.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Priority Annotation for {@link IInvoker} classes, {@link RemoteInterface} types and methods.
+ * calls queued by a non-inline {@link com.reginald.andinvoker.DispatchPolicy} are served by lanes,
+ * higher lanes first and in order within a lane. calls run on binder threads are NOT reordered.
+ */
+@Documented
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+public @interface Priority {
+    int HIGH = 0;
+    int NORMAL = 1;
+    int LOW = 2;
+
+    /**
+     * @return one of {@link #HIGH}, {@link #NORMAL}, {@link #LOW}
+     */
+    int value();
+}
@@ -0,0 +1,77 @@
+package com.reginald.andinvoker.internal;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * background executor for async work which can NOT be done by a oneway binder transaction,
+ * e.g. async calls to a service in the same process.
+ */
+public class AsyncExecutor {
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+            POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AndInvoker-async-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // ONLY posts delayed work to sExecutor, created by the first delayed work
+    private static volatile ScheduledThreadPoolExecutor sScheduler;
+
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static void execute(Runnable runnable) {
+        sExecutor.execute(runnable);
+    }
+
+    public static void schedule(final Runnable runnable, long delayMillis) {
+        if (delayMillis <= 0) {
+            execute(runnable);
+            return;
+        }
+
+        scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                execute(runnable);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor scheduler() {
+        if (sScheduler == null) {
+            synchronized (AsyncExecutor.class) {
+                if (sScheduler == null) {
+                    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable runnable) {
+                                    Thread thread = new Thread(runnable, "AndInvoker-scheduler");
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                    scheduler.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                    scheduler.allowCoreThreadTimeOut(true);
+                    sScheduler = scheduler;
+                }
+            }
+        }
+        return sScheduler;
+    }
+}
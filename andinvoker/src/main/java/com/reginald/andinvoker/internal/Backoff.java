@@ -0,0 +1,21 @@
+package com.reginald.andinvoker.internal;
+
+/**
+ * bounded exponential backoff of reconnects and rebinds
+ */
+public class Backoff {
+    public static final long BASE_DELAY_MILLIS = 100;
+    public static final long MAX_DELAY_MILLIS = 10 * 1000;
+
+    /**
+     * @param attempt failed attempts before, from 0
+     * @return delay before the next attempt
+     */
+    public static long delayOf(int attempt) {
+        if (attempt < 0) {
+            return 0;
+        }
+        // 100 << 7 exceeds the max already
+        return attempt >= 7 ? MAX_DELAY_MILLIS : Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << attempt);
+    }
+}
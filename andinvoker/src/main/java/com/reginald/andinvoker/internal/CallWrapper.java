@@ -10,10 +10,21 @@ import com.reginald.andinvoker.internal.cache.TokenCache;
 
 
 public abstract class CallWrapper extends Call.Stub {
+    private static final String TAG = "CallWrapper";
 
     private static final TokenCache<ICall, Call> sStubCache = TokenCache.build("CallWrapper#Stub");
     private static final TokenCache<IBinder, ICall> sProxyCache = TokenCache.build("CallWrapper#Proxy");
 
+    @Override
+    public void onCallAsync(Bundle params) {
+        try {
+            onCall(params);
+        } catch (Throwable t) {
+            // no one is waiting for a oneway call
+            LogUtil.e(TAG, "onCallAsync() error!", t);
+        }
+    }
+
     public static Call build(final ICall iCall) {
         if (iCall == null) {
             return null;
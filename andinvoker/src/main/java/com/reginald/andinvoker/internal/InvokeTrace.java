@@ -0,0 +1,111 @@
+package com.reginald.andinvoker.internal;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import com.reginald.andinvoker.api.ITracer;
+
+/**
+ * trace sections of ipc calls, disabled by default.
+ * section names are built only if a tracer is set.
+ */
+public final class InvokeTrace {
+    private static final String TAG = "InvokeTrace";
+
+    public static final String SECTION_INVOKE = "AI:invoke ";
+    public static final String SECTION_DISPATCH = "AI:dispatch ";
+    public static final String SECTION_FORWARD = "AI:forward ";
+    public static final String SECTION_ENCODE = "AI:encode ";
+    public static final String SECTION_DECODE = "AI:decode ";
+    public static final String SECTION_WRITE = "AI:write ";
+    public static final String SECTION_READ = "AI:read ";
+    public static final String SECTION_TRANSACT = "AI:transact ";
+
+    // android.os.Trace limit
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private static volatile ITracer sTracer;
+
+    private InvokeTrace() {
+    }
+
+    public static void setTracer(ITracer tracer) {
+        sTracer = tracer;
+    }
+
+    /**
+     * tracer of android.os.Trace, which shows sections in systrace/perfetto.
+     * @return tracer, or null below API 18
+     */
+    public static ITracer systemTracer() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return new SystemTracer();
+        }
+        return null;
+    }
+
+    /**
+     * begin section "{section}{name}.{method}"
+     * @return tracer to end the section with, or null if NOT traced
+     */
+    public static ITracer begin(String section, String name, String method) {
+        ITracer tracer = sTracer;
+        if (tracer == null) {
+            return null;
+        }
+        return begin(tracer, method != null ? section + name + "." + method : section + name);
+    }
+
+    /**
+     * begin section "{section}{name}"
+     * @return tracer to end the section with, or null if NOT traced
+     */
+    public static ITracer begin(String section, String name) {
+        ITracer tracer = sTracer;
+        if (tracer == null) {
+            return null;
+        }
+        return begin(tracer, section + name);
+    }
+
+    private static ITracer begin(ITracer tracer, String sectionName) {
+        if (sectionName.length() > MAX_SECTION_NAME_LENGTH) {
+            sectionName = sectionName.substring(0, MAX_SECTION_NAME_LENGTH);
+        }
+        try {
+            tracer.beginSection(sectionName);
+            return tracer;
+        } catch (Throwable t) {
+            LogUtil.e(TAG, "begin() tracer error!", t);
+            return null;
+        }
+    }
+
+    /**
+     * end the section begun by the tracer
+     * @param tracer tracer returned by begin, may be null
+     */
+    public static void end(ITracer tracer) {
+        if (tracer != null) {
+            try {
+                tracer.endSection();
+            } catch (Throwable t) {
+                LogUtil.e(TAG, "end() tracer error!", t);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static class SystemTracer implements ITracer {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.reginald.andinvoker.internal;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
+import android.os.SharedMemory;
+import android.system.OsConstants;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * payload passed by file descriptor instead of in the binder buffer,
+ * so that large results/args do NOT hit the binder transaction limit.
+ * bytes are put in a SharedMemory region on API 27+, or streamed through a pipe otherwise
+ * (or when streaming is forced by {@link #setStreaming(boolean)}).
+ */
+public final class LargePayload implements Parcelable {
+    private static final String TAG = "LargePayload";
+
+    public static final int DISABLED = 0;
+
+    private static final String KEY_PAYLOAD = "ai_large_payload";
+
+    private static final int TYPE_SHARED_MEMORY = 1;
+    private static final int TYPE_PIPE = 2;
+
+    private static volatile int sThreshold = DISABLED;
+    private static volatile boolean sStreaming;
+
+    private final int mType;
+    private final int mSize;
+    // SharedMemory, or read side of a received pipe
+    private Closeable mDescriptor;
+    // bytes to stream, only for the sender of a pipe
+    private byte[] mPipeBytes;
+
+    public static final Creator<LargePayload> CREATOR = new Creator<LargePayload>() {
+        @Override
+        public LargePayload createFromParcel(Parcel parcel) {
+            return new LargePayload(parcel);
+        }
+
+        @Override
+        public LargePayload[] newArray(int i) {
+            return new LargePayload[0];
+        }
+    };
+
+    /**
+     * payloads larger than threshold are passed by file descriptor.
+     * @param threshold size in bytes, {@link #DISABLED} to disable
+     */
+    public static void setThreshold(int threshold) {
+        sThreshold = threshold;
+    }
+
+    /**
+     * always stream payloads through a pipe, even if SharedMemory is supported.
+     * @param streaming streaming
+     */
+    public static void setStreaming(boolean streaming) {
+        sStreaming = streaming;
+    }
+
+    /**
+     * check whether a payload of size should be passed by file descriptor
+     * @param size size in bytes
+     * @return true if large
+     */
+    public static boolean isLarge(int size) {
+        int threshold = sThreshold;
+        return threshold > DISABLED && size > threshold;
+    }
+
+    public static boolean isEnabled() {
+        return sThreshold > DISABLED;
+    }
+
+    /**
+     * pack a large bundle into a bundle holding only the file descriptor
+     * @param bundle bundle
+     * @return packed bundle, or the bundle itself if NOT large
+     */
+    public static Bundle pack(Bundle bundle) {
+        if (bundle == null || !isEnabled()) {
+            return bundle;
+        }
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(bundle);
+            if (!isLarge(parcel.dataSize())) {
+                return bundle;
+            }
+
+            Bundle packed = new Bundle();
+            packed.putParcelable(KEY_PAYLOAD, create(parcel.marshall()));
+            return packed;
+        } catch (Exception e) {
+            // e.g. bundles with binders can NOT be marshalled
+            LogUtil.w(TAG, "pack() bundle is sent as it is", e);
+            return bundle;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * unpack a bundle packed by {@link #pack(Bundle)}
+     * @param bundle bundle
+     * @return original bundle
+     */
+    public static Bundle unpack(Bundle bundle) {
+        if (bundle == null) {
+            return null;
+        }
+
+        bundle.setClassLoader(LargePayload.class.getClassLoader());
+        if (!bundle.containsKey(KEY_PAYLOAD)) {
+            return bundle;
+        }
+
+        LargePayload payload = bundle.getParcelable(KEY_PAYLOAD);
+        Parcel parcel = payload.toParcel();
+        try {
+            return parcel.readBundle();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public static LargePayload create(byte[] bytes) throws IOException {
+        if (!sStreaming && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return new LargePayload(TYPE_SHARED_MEMORY, bytes.length,
+                    SharedMemoryCompat.create(bytes), null);
+        }
+
+        // pipes are created when written, one for each receiver
+        return new LargePayload(TYPE_PIPE, bytes.length, null, bytes);
+    }
+
+    private LargePayload(int type, int size, Closeable descriptor, byte[] pipeBytes) {
+        mType = type;
+        mSize = size;
+        mDescriptor = descriptor;
+        mPipeBytes = pipeBytes;
+    }
+
+    private LargePayload(Parcel parcel) {
+        mType = parcel.readInt();
+        mSize = parcel.readInt();
+        if (mType == TYPE_SHARED_MEMORY) {
+            mDescriptor = SharedMemoryCompat.fromParcel(parcel);
+        } else {
+            mDescriptor = parcel.readFileDescriptor();
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * read all bytes of the payload, the payload can NOT be read again.
+     * @return bytes
+     * @throws IOException if the payload is NOT available
+     */
+    public synchronized byte[] read() throws IOException {
+        if (mPipeBytes != null) {
+            // never sent, e.g. in the same process
+            byte[] bytes = mPipeBytes;
+            mPipeBytes = null;
+            return bytes;
+        }
+
+        if (mDescriptor == null) {
+            throw new IOException("payload already read or sent");
+        }
+
+        try {
+            if (mType == TYPE_SHARED_MEMORY) {
+                return SharedMemoryCompat.read(mDescriptor, mSize);
+            }
+
+            byte[] bytes = new byte[mSize];
+            InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(
+                    (ParcelFileDescriptor) mDescriptor);
+            int offset = 0;
+            while (offset < mSize) {
+                int count = in.read(bytes, offset, mSize - offset);
+                if (count < 0) {
+                    throw new IOException(String.format("pipe closed at %d/%d", offset, mSize));
+                }
+                offset += count;
+            }
+            return bytes;
+        } finally {
+            closeQuietly(mDescriptor);
+            mDescriptor = null;
+        }
+    }
+
+    /**
+     * read the payload into a parcel positioned at the start
+     * @return parcel to be recycled by the caller
+     */
+    public Parcel toParcel() {
+        byte[] bytes;
+        try {
+            bytes = read();
+        } catch (IOException e) {
+            throw new IllegalStateException("large payload read error!", e);
+        }
+
+        Parcel parcel = Parcel.obtain();
+        parcel.unmarshall(bytes, 0, bytes.length);
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Override
+    public int describeContents() {
+        return CONTENTS_FILE_DESCRIPTOR;
+    }
+
+    /**
+     * the descriptor is duplicated in parcel, so a payload can be written more than once,
+     * e.g. by retried transactions. a received pipe can only be read by one receiver.
+     */
+    @Override
+    public synchronized void writeToParcel(Parcel parcel, int flags) {
+        if (mDescriptor == null && mPipeBytes == null) {
+            throw new IllegalStateException("payload already read");
+        }
+
+        ParcelFileDescriptor[] pipe = null;
+        if (mPipeBytes != null) {
+            try {
+                pipe = ParcelFileDescriptor.createPipe();
+            } catch (IOException e) {
+                throw new IllegalStateException("large payload pipe error!", e);
+            }
+        }
+
+        parcel.writeInt(mType);
+        parcel.writeInt(mSize);
+        if (mType == TYPE_SHARED_MEMORY) {
+            ((Parcelable) mDescriptor).writeToParcel(parcel, flags);
+        } else if (pipe != null) {
+            parcel.writeFileDescriptor(pipe[0].getFileDescriptor());
+            closeQuietly(pipe[0]);
+            startWriting(pipe[1], mPipeBytes);
+        } else {
+            parcel.writeFileDescriptor(((ParcelFileDescriptor) mDescriptor).getFileDescriptor());
+        }
+
+        if ((flags & PARCELABLE_WRITE_RETURN_VALUE) != 0) {
+            // NOT used after returned
+            closeQuietly(mDescriptor);
+            mDescriptor = null;
+            mPipeBytes = null;
+        }
+    }
+
+    private static void startWriting(final ParcelFileDescriptor writeSide, final byte[] bytes) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(writeSide);
+                try {
+                    out.write(bytes);
+                } catch (IOException e) {
+                    // reader is gone
+                    LogUtil.w(TAG, "startWriting() pipe write error!", e);
+                } finally {
+                    closeQuietly(out);
+                }
+            }
+        }, "AndInvoker-pipe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LogUtil.w(TAG, "closeQuietly() close error!", e);
+            }
+        }
+    }
+
+    // only loaded on API 27+
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    private static class SharedMemoryCompat {
+        static Closeable create(byte[] bytes) throws IOException {
+            try {
+                SharedMemory sharedMemory = SharedMemory.create(TAG, bytes.length);
+                ByteBuffer buffer = sharedMemory.mapReadWrite();
+                try {
+                    buffer.put(bytes);
+                } finally {
+                    SharedMemory.unmap(buffer);
+                }
+                // receivers can only read it
+                sharedMemory.setProtect(OsConstants.PROT_READ);
+                return sharedMemory;
+            } catch (Exception e) {
+                throw new IOException("shared memory create error!", e);
+            }
+        }
+
+        static Closeable fromParcel(Parcel parcel) {
+            return SharedMemory.CREATOR.createFromParcel(parcel);
+        }
+
+        static byte[] read(Closeable descriptor, int size) throws IOException {
+            try {
+                ByteBuffer buffer = ((SharedMemory) descriptor).mapReadOnly();
+                try {
+                    byte[] bytes = new byte[size];
+                    buffer.get(bytes);
+                    return bytes;
+                } finally {
+                    SharedMemory.unmap(buffer);
+                }
+            } catch (Exception e) {
+                throw new IOException("shared memory read error!", e);
+            }
+        }
+    }
+}
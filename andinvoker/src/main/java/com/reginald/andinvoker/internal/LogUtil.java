@@ -6,6 +6,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.SimpleDateFormat;
 
+/**
+ * logs are formatted only if enabled.
+ * fixed-arity overloads are picked for up to 4 args, so that disabled logs allocate no varargs array.
+ * guard logs with primitive args by {@link #LOG_ENABLED} on hot paths to avoid boxing.
+ */
 public class LogUtil {
     public static boolean LOG_ENABLED = false;
     public static boolean ALWAYS_SHOW_ERROR = false;
@@ -18,6 +23,30 @@ public class LogUtil {
         }
     }
 
+    public static void d(String tag, String formatMsg, Object arg1) {
+        if (LOG_ENABLED) {
+            d(tag, String.format(formatMsg, arg1));
+        }
+    }
+
+    public static void d(String tag, String formatMsg, Object arg1, Object arg2) {
+        if (LOG_ENABLED) {
+            d(tag, String.format(formatMsg, arg1, arg2));
+        }
+    }
+
+    public static void d(String tag, String formatMsg, Object arg1, Object arg2, Object arg3) {
+        if (LOG_ENABLED) {
+            d(tag, String.format(formatMsg, arg1, arg2, arg3));
+        }
+    }
+
+    public static void d(String tag, String formatMsg, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (LOG_ENABLED) {
+            d(tag, String.format(formatMsg, arg1, arg2, arg3, arg4));
+        }
+    }
+
     public static void d(String tag, String formatMsg, Object... args) {
         if (LOG_ENABLED) {
             d(tag, String.format(formatMsg, args));
@@ -30,6 +59,30 @@ public class LogUtil {
         }
     }
 
+    public static void i(String tag, String formatMsg, Object arg1) {
+        if (LOG_ENABLED) {
+            i(tag, String.format(formatMsg, arg1));
+        }
+    }
+
+    public static void i(String tag, String formatMsg, Object arg1, Object arg2) {
+        if (LOG_ENABLED) {
+            i(tag, String.format(formatMsg, arg1, arg2));
+        }
+    }
+
+    public static void i(String tag, String formatMsg, Object arg1, Object arg2, Object arg3) {
+        if (LOG_ENABLED) {
+            i(tag, String.format(formatMsg, arg1, arg2, arg3));
+        }
+    }
+
+    public static void i(String tag, String formatMsg, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (LOG_ENABLED) {
+            i(tag, String.format(formatMsg, arg1, arg2, arg3, arg4));
+        }
+    }
+
     public static void i(String tag, String formatMsg, Object... args) {
         if (LOG_ENABLED) {
             i(tag, String.format(formatMsg, args));
@@ -42,6 +95,30 @@ public class LogUtil {
         }
     }
 
+    public static void w(String tag, String formatMsg, Object arg1) {
+        if (LOG_ENABLED) {
+            w(tag, String.format(formatMsg, arg1));
+        }
+    }
+
+    public static void w(String tag, String formatMsg, Object arg1, Object arg2) {
+        if (LOG_ENABLED) {
+            w(tag, String.format(formatMsg, arg1, arg2));
+        }
+    }
+
+    public static void w(String tag, String formatMsg, Object arg1, Object arg2, Object arg3) {
+        if (LOG_ENABLED) {
+            w(tag, String.format(formatMsg, arg1, arg2, arg3));
+        }
+    }
+
+    public static void w(String tag, String formatMsg, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (LOG_ENABLED) {
+            w(tag, String.format(formatMsg, arg1, arg2, arg3, arg4));
+        }
+    }
+
     public static void w(String tag, String formatMsg, Object... args) {
         if (LOG_ENABLED) {
             w(tag, String.format(formatMsg, args));
@@ -66,6 +143,30 @@ public class LogUtil {
         }
     }
 
+    public static void e(String tag, String formatMsg, Object arg1) {
+        if (LOG_ENABLED || ALWAYS_SHOW_ERROR) {
+            e(tag, String.format(formatMsg, arg1));
+        }
+    }
+
+    public static void e(String tag, String formatMsg, Object arg1, Object arg2) {
+        if (LOG_ENABLED || ALWAYS_SHOW_ERROR) {
+            e(tag, String.format(formatMsg, arg1, arg2));
+        }
+    }
+
+    public static void e(String tag, String formatMsg, Object arg1, Object arg2, Object arg3) {
+        if (LOG_ENABLED || ALWAYS_SHOW_ERROR) {
+            e(tag, String.format(formatMsg, arg1, arg2, arg3));
+        }
+    }
+
+    public static void e(String tag, String formatMsg, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (LOG_ENABLED || ALWAYS_SHOW_ERROR) {
+            e(tag, String.format(formatMsg, arg1, arg2, arg3, arg4));
+        }
+    }
+
     public static void e(String tag, String formatMsg, Object... args) {
         if (LOG_ENABLED || ALWAYS_SHOW_ERROR) {
             e(tag, String.format(formatMsg, args));
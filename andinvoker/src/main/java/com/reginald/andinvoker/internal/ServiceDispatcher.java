@@ -0,0 +1,543 @@
+package com.reginald.andinvoker.internal;
+
+import android.os.Bundle;
+
+import com.reginald.andinvoker.InvokeException;
+import com.reginald.andinvoker.OverloadedException;
+import com.reginald.andinvoker.api.Priority;
+import com.reginald.andinvoker.internal.metrics.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * runs calls of one registered service, inline on the calling thread or on a dedicated executor.
+ * clients probe whether a service is dispatched and call it by invokeAsync with a oneway result
+ * callback. sync invokes of a dispatched service are answered by {@link #dispatchedResult()},
+ * and the client calls again by invokeAsync,
+ * so binder threads of the host process are NOT pinned by the service.
+ * sync calls which can NOT be handed off wait only if a thread of the service is free,
+ * see {@link #callIfIdle(int, Callable)}.
+ * queued calls are served by {@link Priority} lanes, higher lanes first and in order within a lane.
+ * calls beyond the limits of the service fail fast with {@link OverloadedException}.
+ */
+public class ServiceDispatcher {
+    private static final String KEY_DISPATCHED = "ai_dispatched";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int LANE_COUNT = Priority.LOW + 1;
+    private static final String[] LANE_NAMES = {"high", "normal", "low"};
+    private static final long MIN_RETRY_AFTER_MILLIS = 50;
+    private static final long MAX_RETRY_AFTER_MILLIS = 10 * 1000;
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    public static final ServiceDispatcher INLINE = new ServiceDispatcher(null, null, false, false,
+            UNLIMITED, UNLIMITED);
+
+    // executor of the current thread
+    private static final ThreadLocal<ThreadPoolExecutor> sCurrentExecutor = new ThreadLocal<>();
+
+    // keeps calls of different services in order within a lane of the shared executor
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    // non-inline dispatchers NOT shut down yet
+    private static final Set<ServiceDispatcher> sLiveDispatchers =
+            Collections.newSetFromMap(new ConcurrentHashMap<ServiceDispatcher, Boolean>());
+
+    // @Priority of IInvoker classes
+    private static final ConcurrentHashMap<Class<?>, Integer> sPriorities = new ConcurrentHashMap<>();
+
+    private final String mName;
+    private final ThreadPoolExecutor mExecutor;
+    // serial dispatchers keep the order of all calls
+    private final boolean mPrioritized;
+    private final boolean mShared;
+    // max calls running at the same time
+    private final int mMaxConcurrent;
+    // max calls queued or running, UNLIMITED for no admission control
+    private final long mMaxInFlight;
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    // calls queued or running on the executor, with or without limits
+    private final AtomicInteger mBusy = new AtomicInteger();
+    // shared only: calls waiting for one of the mMaxConcurrent slots of the service
+    private final PriorityQueue<LaneTask> mPending;
+    // shared only: calls handed to the shared executor, guarded by mPending
+    private int mRunning;
+    // moving average of call durations, for retry-after hints
+    private volatile long mAverageNanos;
+    private final AtomicIntegerArray mDepths = new AtomicIntegerArray(LANE_COUNT);
+    private final Histogram[] mWaits = new Histogram[LANE_COUNT];
+
+    /**
+     * @param name service name
+     * @param maxThreads max threads, 1 for a serial queue
+     * @return dispatcher
+     */
+    public static ServiceDispatcher create(String name, int maxThreads) {
+        return create(name, maxThreads, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @param name service name
+     * @param maxThreads max threads, 1 for a serial queue
+     * @param maxConcurrent max calls running at the same time
+     * @param maxQueued max calls waiting for a thread
+     * @return dispatcher
+     */
+    public static ServiceDispatcher create(String name, int maxThreads, int maxConcurrent,
+            int maxQueued) {
+        int threads = Math.min(maxThreads, maxConcurrent);
+        ThreadPoolExecutor executor = newExecutor(name, threads);
+        ServiceDispatcher dispatcher = new ServiceDispatcher(name, executor, maxThreads > 1, false,
+                threads, maxQueued);
+        sLiveDispatchers.add(dispatcher);
+        return dispatcher;
+    }
+
+    /**
+     * run on the calling thread, with admission control
+     * @param name service name
+     * @param maxConcurrent max calls running at the same time
+     * @return dispatcher
+     */
+    public static ServiceDispatcher inline(String name, int maxConcurrent) {
+        if (maxConcurrent == UNLIMITED) {
+            return INLINE;
+        }
+        return new ServiceDispatcher(name, null, false, false, maxConcurrent, 0);
+    }
+
+    /**
+     * run on the executor shared by all services of this process registered with it.
+     * at most maxConcurrent calls of the service are handed to the shared executor,
+     * the others wait in a queue of the service, which is bounded by maxQueued.
+     * @param name service name
+     * @param maxConcurrent max calls running at the same time
+     * @param maxQueued max calls waiting for a thread
+     * @return dispatcher
+     */
+    public static ServiceDispatcher shared(String name, int maxConcurrent, int maxQueued) {
+        ServiceDispatcher dispatcher = new ServiceDispatcher(name, SharedHolder.EXECUTOR, true, true,
+                Math.min(maxConcurrent, SharedHolder.EXECUTOR.getMaximumPoolSize()), maxQueued);
+        sLiveDispatchers.add(dispatcher);
+        return dispatcher;
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        executor.setThreadFactory(newThreadFactory(name, executor));
+        return executor;
+    }
+
+    private ServiceDispatcher(String name, ThreadPoolExecutor executor, boolean prioritized,
+            boolean shared, int maxConcurrent, int maxQueued) {
+        mName = name;
+        mExecutor = executor;
+        mPrioritized = prioritized;
+        mShared = shared;
+        mMaxConcurrent = maxConcurrent;
+        mPending = shared ? new PriorityQueue<LaneTask>() : null;
+        mMaxInFlight = maxConcurrent == UNLIMITED || maxQueued == UNLIMITED ?
+                UNLIMITED : (long) maxConcurrent + maxQueued;
+        for (int i = 0; i < LANE_COUNT; i++) {
+            mWaits[i] = new Histogram();
+        }
+    }
+
+    public boolean isInline() {
+        return mExecutor == null;
+    }
+
+    /**
+     * run without waiting in the normal lane
+     * @param runnable runnable
+     */
+    public void execute(Runnable runnable) {
+        execute(Priority.NORMAL, runnable);
+    }
+
+    /**
+     * run without waiting
+     * @param priority lane of {@link Priority}
+     * @param runnable runnable
+     */
+    public void execute(int priority, Runnable runnable) {
+        long startNanos = admit();
+        if (isInline()) {
+            try {
+                runnable.run();
+            } finally {
+                release(startNanos);
+            }
+            return;
+        }
+
+        int lane = mPrioritized ? laneOf(priority) : Priority.NORMAL;
+        mBusy.incrementAndGet();
+        mDepths.incrementAndGet(lane);
+        try {
+            LaneTask task = new LaneTask(lane, sSequence.getAndIncrement(), runnable);
+            if (mShared) {
+                executeShared(task);
+            } else {
+                mExecutor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            mBusy.decrementAndGet();
+            mDepths.decrementAndGet(lane);
+            release(startNanos);
+            throw e;
+        }
+    }
+
+    /**
+     * hand the task to the shared executor if the service has a free slot, or queue it
+     */
+    private void executeShared(LaneTask task) {
+        synchronized (mPending) {
+            if (mRunning >= mMaxConcurrent) {
+                mPending.add(task);
+                return;
+            }
+            mRunning++;
+        }
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (mPending) {
+                mRunning--;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * pass the slot of a finished task to the next queued one
+     */
+    private void onSharedTaskDone() {
+        LaneTask next;
+        synchronized (mPending) {
+            next = mPending.poll();
+            if (next == null) {
+                mRunning--;
+                return;
+            }
+        }
+        mExecutor.execute(next);
+    }
+
+    /**
+     * run in the normal lane and wait for the result
+     * @param callable callable
+     * @return result
+     */
+    public <T> T call(Callable<T> callable) {
+        return call(Priority.NORMAL, callable);
+    }
+
+    /**
+     * run and wait for the result
+     * @param priority lane of {@link Priority}
+     * @param callable callable
+     * @return result
+     */
+    public <T> T call(int priority, Callable<T> callable) {
+        try {
+            // calls from its own threads run directly, or a serial dispatcher waits for itself
+            if (mExecutor != null && sCurrentExecutor.get() == mExecutor) {
+                return callable.call();
+            }
+            if (isInline()) {
+                long startNanos = admit();
+                try {
+                    return callable.call();
+                } finally {
+                    release(startNanos);
+                }
+            }
+            FutureTask<T> future = new FutureTask<>(callable);
+            execute(priority, future);
+            return await(future);
+        } catch (ExecutionException e) {
+            throw wrap(e.getCause());
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * run and wait for the result only if a thread of the service is free, for sync calls
+     * from binder threads which can NOT be handed off. they never wait in the queue of the service.
+     * @param priority lane of {@link Priority}
+     * @param callable callable
+     * @return result
+     * @throws OverloadedException if all threads of the service are busy
+     */
+    public <T> T callIfIdle(int priority, Callable<T> callable) {
+        if (!isInline() && sCurrentExecutor.get() != mExecutor) {
+            int busy = mBusy.get();
+            boolean sharedFull = mShared && mExecutor.getActiveCount() >= mExecutor.getMaximumPoolSize();
+            if (busy >= mMaxConcurrent || sharedFull) {
+                throw new OverloadedException(mName, busy, retryAfterMillis(Math.max(1, busy)));
+            }
+        }
+        return call(priority, callable);
+    }
+
+    /**
+     * stop after queued calls finish. the shared executor is never stopped.
+     */
+    public void shutdown() {
+        sLiveDispatchers.remove(this);
+        if (!isInline() && !mShared) {
+            mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * count a new call, or fail fast if the limits are reached
+     * @return start time of the call
+     */
+    private long admit() {
+        if (mMaxInFlight == UNLIMITED) {
+            return 0;
+        }
+        int inFlight = mInFlight.incrementAndGet();
+        if (inFlight > mMaxInFlight) {
+            mInFlight.decrementAndGet();
+            throw new OverloadedException(mName, inFlight - 1, retryAfterMillis(inFlight));
+        }
+        return System.nanoTime();
+    }
+
+    private void release(long startNanos) {
+        if (mMaxInFlight != UNLIMITED) {
+            mInFlight.decrementAndGet();
+        }
+        if (startNanos == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        long average = mAverageNanos;
+        mAverageNanos = average == 0 ? duration : average + (duration - average) / 8;
+    }
+
+    /**
+     * time for the calls in flight to drain, by the average call duration
+     */
+    private long retryAfterMillis(int inFlight) {
+        long drainNanos = mAverageNanos * inFlight / Math.max(1, mMaxConcurrent);
+        long retryAfter = TimeUnit.NANOSECONDS.toMillis(drainNanos);
+        return Math.max(MIN_RETRY_AFTER_MILLIS, Math.min(MAX_RETRY_AFTER_MILLIS, retryAfter));
+    }
+
+    /**
+     * calls waiting in a lane
+     * @param priority lane of {@link Priority}
+     * @return queue depth
+     */
+    public int queueDepth(int priority) {
+        return mDepths.get(laneOf(priority));
+    }
+
+    /**
+     * time calls waited in a lane before running
+     * @param priority lane of {@link Priority}
+     * @return wait time histogram in nanoseconds
+     */
+    public Histogram.Snapshot waitTime(int priority) {
+        return mWaits[laneOf(priority)].snapshot();
+    }
+
+    /**
+     * {@link Priority} of an IInvoker class
+     * @param invokerClass class
+     * @return priority, {@link Priority#NORMAL} if NOT annotated
+     */
+    public static int priorityOf(Class<?> invokerClass) {
+        Integer priority = sPriorities.get(invokerClass);
+        if (priority == null) {
+            Priority annotation = invokerClass.getAnnotation(Priority.class);
+            priority = annotation != null ? laneOf(annotation.value()) : Priority.NORMAL;
+            sPriorities.put(invokerClass, priority);
+        }
+        return priority;
+    }
+
+    private static int laneOf(int priority) {
+        return priority < Priority.HIGH ? Priority.HIGH : priority > Priority.LOW ? Priority.LOW : priority;
+    }
+
+    /**
+     * dump lanes of all dispatchers, one line for each lane used
+     * @return text for crash/perf reports
+     */
+    public static String dumpAll() {
+        List<String> lines = new ArrayList<>();
+        for (ServiceDispatcher dispatcher : sLiveDispatchers) {
+            for (int lane = 0; lane < LANE_COUNT; lane++) {
+                Histogram.Snapshot waits = dispatcher.mWaits[lane].snapshot();
+                int depth = dispatcher.mDepths.get(lane);
+                if (waits.count == 0 && depth == 0) {
+                    continue;
+                }
+                lines.add(String.format("dispatcher [%s] %s: depth = %d, calls = %d, "
+                                + "wait(us) mean = %d, p50 = %d, p90 = %d, p99 = %d, max = %d",
+                        dispatcher.mName, LANE_NAMES[lane], depth, waits.count,
+                        micros(waits.mean()), micros(waits.percentile(50)),
+                        micros(waits.percentile(90)), micros(waits.percentile(99)),
+                        micros(waits.max)));
+            }
+        }
+        Collections.sort(lines);
+
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void resetAll() {
+        for (ServiceDispatcher dispatcher : sLiveDispatchers) {
+            for (Histogram waits : dispatcher.mWaits) {
+                waits.reset();
+            }
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static <T> T await(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static RuntimeException wrap(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new InvokeException(t);
+    }
+
+    private static ThreadFactory newThreadFactory(final String name, final ThreadPoolExecutor executor) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        sCurrentExecutor.set(executor);
+                        runnable.run();
+                    }
+                }, "AndInvoker-" + name + "-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * result of a sync invoke which should be invoked again by invokeAsync
+     * @return marker result
+     */
+    public static Bundle dispatchedResult() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(KEY_DISPATCHED, true);
+        return bundle;
+    }
+
+    public static boolean isDispatched(Bundle result) {
+        return result != null && result.size() == 1 && result.getBoolean(KEY_DISPATCHED, false);
+    }
+
+    @Override
+    public String toString() {
+        if (isInline()) {
+            return mMaxInFlight == UNLIMITED ? "ServiceDispatcher[inline]" :
+                    String.format("ServiceDispatcher[inline %s, max concurrent = %d]", mName, mMaxConcurrent);
+        }
+        return String.format("ServiceDispatcher[%s%s, threads = %d, max in flight = %s]",
+                mShared ? "shared " : "", mName, mExecutor.getMaximumPoolSize(),
+                mMaxInFlight == UNLIMITED ? "unlimited" : String.valueOf(mMaxInFlight));
+    }
+
+    /**
+     * queued call ordered by lane, then by sequence
+     */
+    private final class LaneTask implements Runnable, Comparable<LaneTask> {
+        private final int mLane;
+        private final long mSequence;
+        private final long mEnqueueNanos = System.nanoTime();
+        private final Runnable mRunnable;
+
+        LaneTask(int lane, long sequence, Runnable runnable) {
+            mLane = lane;
+            mSequence = sequence;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            mDepths.decrementAndGet(mLane);
+            mWaits[mLane].record(startNanos - mEnqueueNanos);
+            try {
+                mRunnable.run();
+            } finally {
+                mBusy.decrementAndGet();
+                release(startNanos);
+                if (mShared) {
+                    onSharedTaskDone();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(LaneTask another) {
+            if (mLane != another.mLane) {
+                return mLane < another.mLane ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : mSequence == another.mSequence ? 0 : 1;
+        }
+    }
+
+    private static class SharedHolder {
+        private static final ThreadPoolExecutor EXECUTOR = newExecutor("shared",
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+}
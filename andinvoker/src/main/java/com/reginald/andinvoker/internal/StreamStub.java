@@ -0,0 +1,103 @@
+package com.reginald.andinvoker.internal;
+
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.RemoteException;
+
+import com.reginald.andinvoker.api.IResultStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * serves a {@link IResultStream} to the caller chunk by chunk.
+ * the stream is closed when it ends, or is cancelled, or the caller dies.
+ */
+public class StreamStub extends Stream.Stub implements IBinder.DeathRecipient {
+    private static final String TAG = "StreamStub";
+
+    public static final int MAX_CHUNK_SIZE = 1024;
+
+    private final IResultStream mResultStream;
+    private final IBinder mClientToken;
+    private boolean mClosed;
+
+    public static Stream build(IResultStream resultStream, IBinder clientToken) {
+        StreamStub streamStub = new StreamStub(resultStream, clientToken);
+        if (clientToken != null) {
+            try {
+                clientToken.linkToDeath(streamStub, 0);
+            } catch (RemoteException e) {
+                // caller is already dead
+                streamStub.close();
+            }
+        }
+        return streamStub;
+    }
+
+    private StreamStub(IResultStream resultStream, IBinder clientToken) {
+        mResultStream = resultStream;
+        mClientToken = clientToken;
+        mClosed = resultStream == null;
+    }
+
+    @Override
+    public synchronized List<Bundle> pull(int maxCount) {
+        int count = Math.max(1, Math.min(maxCount, MAX_CHUNK_SIZE));
+        List<Bundle> chunk = new ArrayList<>(count);
+        if (mClosed) {
+            // empty chunk for the end of stream
+            return chunk;
+        }
+
+        boolean remote = Binder.getCallingPid() != Process.myPid();
+        try {
+            while (chunk.size() < count) {
+                Bundle item = mResultStream.next();
+                if (item == null) {
+                    close();
+                    break;
+                }
+                chunk.add(remote ? LargePayload.pack(item) : item);
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        if (LogUtil.LOG_ENABLED) {
+            LogUtil.d(TAG, "pull() maxCount = %d, pulled = %d", maxCount, chunk.size());
+        }
+        return chunk;
+    }
+
+    @Override
+    public void cancel() {
+        LogUtil.d(TAG, "cancel() stream = %s", mResultStream);
+        close();
+    }
+
+    @Override
+    public void binderDied() {
+        LogUtil.w(TAG, "binderDied() caller of stream %s died", mResultStream);
+        close();
+    }
+
+    private synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        if (mClientToken != null) {
+            mClientToken.unlinkToDeath(this, 0);
+        }
+        try {
+            mResultStream.close();
+        } catch (Throwable t) {
+            LogUtil.e(TAG, "close() stream close error!", t);
+        }
+    }
+}
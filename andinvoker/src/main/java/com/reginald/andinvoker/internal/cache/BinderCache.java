@@ -5,57 +5,146 @@ import android.os.RemoteException;
 
 import com.reginald.andinvoker.internal.LogUtil;
 
-import java.util.HashMap;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * cache of remote binders, removed when the remote dies.
+ * cache hits are lock-free, and concurrent loads of the same key share one load
+ * which runs without holding any lock, so a slow ipc does NOT block other keys.
+ */
 public class BinderCache<T> {
     private static final String TAG = "BinderCache";
 
-    private final HashMap<String, BinderRecord> mRemoteServiceCache = new HashMap<>();
-    private final String mName;
+    private final ConcurrentHashMap<String, BinderRecord> mRemoteServiceCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PendingLoad<T>> mPendingLoads = new ConcurrentHashMap<>();
+    private final String mTag;
 
     public static <T> BinderCache<T> noCache() {
         return new BinderCache<T>("NOCACHE") {
+            @Override
+            public T peek(String key) {
+                return null;
+            }
+
             @Override
             public T get(String key, Loader<T> loader) {
                 return loader.load();
             }
+
+            @Override
+            public void put(String key, T binderable) {
+            }
         };
     }
 
     public BinderCache(String name) {
-        mName = name;
+        mTag = TAG + "(" + name + ")";
+    }
+
+    /**
+     * get the cached value without loading, allocates nothing on a hit.
+     * @param key key
+     * @return cached value or null
+     */
+    public T peek(String key) {
+        return getCached(key);
     }
 
     public T get(String key, Loader<T> loader) {
-        synchronized (mRemoteServiceCache) {
-            BinderRecord br = mRemoteServiceCache.get(key);
-            if (br != null) {
-                IBinder binder = toBinder(br.binderable);
-                if (binder != null && binder.isBinderAlive()) {
-                    LogUtil.d(getTag(), "get cached for " + key + " value = " + br.binderable);
-                    return br.binderable;
-                } else {
-                    mRemoteServiceCache.remove(key);
-                }
+        T cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        PendingLoad<T> pendingLoad = new PendingLoad<>();
+        PendingLoad<T> existingLoad = mPendingLoads.putIfAbsent(key, pendingLoad);
+        if (existingLoad != null) {
+            LogUtil.d(mTag, "wait for loading of %s", key);
+            return existingLoad.await();
+        }
+
+        try {
+            // loaded by others just now
+            T binderable = getCached(key);
+            if (binderable == null) {
+                binderable = load(key, loader);
             }
+            pendingLoad.finish(binderable, null);
+            return binderable;
+        } catch (RuntimeException e) {
+            pendingLoad.finish(null, e);
+            throw e;
+        } finally {
+            mPendingLoads.remove(key, pendingLoad);
+        }
+    }
 
-            T binderable = loader.load();
-            LogUtil.d(getTag(), "create for " + key + " value = " + binderable);
-            if (binderable != null) {
-                br = new BinderRecord(binderable);
-                try {
-                    br.linkToDeath();
-                    mRemoteServiceCache.put(key, br);
-                    return binderable;
-                } catch (RemoteException e) {
-                    e.printStackTrace();
+    private T getCached(String key) {
+        BinderRecord br = mRemoteServiceCache.get(key);
+        if (br != null) {
+            T binderable = br.binderable;
+            IBinder binder = toBinder(binderable);
+            if (binder != null && binder.isBinderAlive()) {
+                if (LogUtil.LOG_ENABLED) {
+                    LogUtil.d(mTag, "get cached for %s value = %s", key, binderable);
                 }
+                return binderable;
             }
+            mRemoteServiceCache.remove(key, br);
         }
+        return null;
+    }
 
+    private T load(String key, Loader<T> loader) {
+        T binderable = loader.load();
+        LogUtil.d(mTag, "create for %s value = %s", key, binderable);
+        if (binderable != null) {
+            BinderRecord br = new BinderRecord(key, binderable);
+            try {
+                br.linkToDeath();
+                mRemoteServiceCache.put(key, br);
+                return binderable;
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        }
         return null;
     }
 
+    /**
+     * cache a value fetched in bulk, unless a live one is cached
+     * @param key key
+     * @param binderable value
+     */
+    public void put(String key, T binderable) {
+        if (binderable == null || getCached(key) != null) {
+            return;
+        }
+        IBinder binder = toBinder(binderable);
+        if (binder == null || !binder.isBinderAlive()) {
+            return;
+        }
+        BinderRecord br = new BinderRecord(key, binderable);
+        try {
+            br.linkToDeath();
+            mRemoteServiceCache.put(key, br);
+        } catch (RemoteException e) {
+            LogUtil.w(mTag, "put() link to death error for %s", key);
+        }
+    }
+
+    /**
+     * remove a cached value, e.g. of an unregistered service
+     * @param key key
+     */
+    public void remove(String key) {
+        BinderRecord br = mRemoteServiceCache.remove(key);
+        if (br != null) {
+            br.unlinkToDeath();
+        }
+    }
+
     public IBinder toBinder(T value) {
         if (value instanceof IBinder) {
             return (IBinder) value;
@@ -64,20 +153,48 @@ public class BinderCache<T> {
     }
 
     public void clear() {
-        synchronized (mRemoteServiceCache) {
-            mRemoteServiceCache.clear();
-        }
+        mRemoteServiceCache.clear();
     }
 
-    private String getTag() {
-        return TAG + "(" + mName + ")";
+    private static class PendingLoad<T> {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile T mResult;
+        private volatile RuntimeException mError;
+
+        void finish(T result, RuntimeException error) {
+            mResult = result;
+            mError = error;
+            mLatch.countDown();
+        }
+
+        T await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mLatch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (mError != null) {
+                throw mError;
+            }
+            return mResult;
+        }
     }
 
     private class BinderRecord {
-        public T binderable;
+        private final String mKey;
+        public volatile T binderable;
         private BinderDeath mBd;
 
-        public BinderRecord(T binderable) {
+        public BinderRecord(String key, T binderable) {
+            mKey = key;
             this.binderable = binderable;
         }
 
@@ -121,6 +238,7 @@ public class BinderCache<T> {
                     binder.unlinkToDeath(this, 0);
                     mBr.binderable = null;
                 }
+                mRemoteServiceCache.remove(mBr.mKey, mBr);
             }
         }
     }
@@ -128,4 +246,4 @@ public class BinderCache<T> {
     public interface Loader<T> {
         T load();
     }
-}
\ No newline at end of file
+}
@@ -2,61 +2,252 @@ package com.reginald.andinvoker.internal.cache;
 
 import com.reginald.andinvoker.internal.LogUtil;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * concurrent cache with weak keys and weak values.
+ * cache hits are lock-free, a value is loaded only once per key at a time,
+ * and entries of collected keys/values are cleaned up by a reference queue.
+ * if the cache is full, the least recently used entries are evicted.
+ */
 public class TokenCache<K, V> {
     private static final String TAG = "TokenCache";
 
-    private final WeakHashMap<K, WeakReference<V>> mCache = new WeakHashMap<>();
-    private final Object mLock = new Object();
+    private static final int DEFAULT_MAX_SIZE = 1024;
 
-    private String mName;
-    private int mMaxCacheSize;
+    private final ConcurrentHashMap<Object, Entry<V>> mCache = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> mQueue = new ReferenceQueue<>();
+    private final AtomicLong mClock = new AtomicLong();
+
+    private final String mTag;
+    private final int mMaxCacheSize;
 
     public static <K, V> TokenCache<K, V> build(String name) {
-        return new TokenCache<>(name, 1024);
+        return new TokenCache<>(name, DEFAULT_MAX_SIZE);
     }
 
     private TokenCache(String name, int maxSize) {
-        mName = name;
+        mTag = TAG + "(" + name + ")";
         mMaxCacheSize = maxSize;
     }
 
-    private String getTag() {
-        return TAG + "(" + mName + ")";
-    }
-
     public V get(K key, Loader<V> loader) {
-        synchronized (mLock) {
-            WeakReference<V> valueRef = mCache.get(key);
-            LogUtil.d(getTag(), "get cache item: key = %s, valueRef = %s, size = %d",
-                    key, valueRef, mCache.size());
-            V value = valueRef != null ? valueRef.get() : null;
+        expunge();
 
+        LookupKey lookupKey = new LookupKey(key);
+        while (true) {
+            Entry<V> entry = mCache.get(lookupKey);
+            V value = entry != null ? entry.value() : null;
             if (value != null) {
+                entry.accessTime = mClock.incrementAndGet();
                 return value;
             }
 
-            if (loader != null) {
-                value = loader.load();
-                if (value != null) {
-                    if (mCache.size() < mMaxCacheSize) {
-                        mCache.put(key, new WeakReference<>(value));
-                    } else {
-                        LogUtil.e(getTag(), "cache exceeded max %d!", mMaxCacheSize);
+            if (loader == null) {
+                return null;
+            }
+
+            boolean created = false;
+            if (entry == null) {
+                Entry<V> newEntry = new Entry<>(new WeakKey(key, mQueue));
+                entry = mCache.putIfAbsent(newEntry.key, newEntry);
+                if (entry == null) {
+                    entry = newEntry;
+                    created = true;
+                }
+            }
+
+            // loads of the same key wait for each other
+            synchronized (entry) {
+                if (entry.removed) {
+                    continue;
+                }
+
+                value = entry.value();
+                if (value == null) {
+                    value = loader.load();
+                    LogUtil.d(mTag, "load cache item: key = %s, value = %s", key, value);
+                    if (value == null) {
+                        removeEntry(entry);
+                        return null;
                     }
+                    entry.setValue(new ValueRef<>(value, mQueue, entry));
                 }
+                entry.accessTime = mClock.incrementAndGet();
             }
 
+            if (created && mCache.size() > mMaxCacheSize) {
+                evict();
+            }
             return value;
         }
     }
 
     public V remove(K key) {
-        synchronized (mLock) {
-            WeakReference<V> removedRef = mCache.remove(key);
-            return removedRef != null ? removedRef.get() : null;
+        expunge();
+
+        Entry<V> entry = mCache.get(new LookupKey(key));
+        if (entry == null) {
+            return null;
+        }
+
+        synchronized (entry) {
+            V value = entry.value();
+            removeEntry(entry);
+            return value;
+        }
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    private void removeEntry(Entry<V> entry) {
+        entry.removed = true;
+        mCache.remove(entry.key, entry);
+    }
+
+    private void expunge() {
+        Reference<?> ref;
+        while ((ref = mQueue.poll()) != null) {
+            if (ref instanceof ValueRef) {
+                Entry<?> entry = ((ValueRef<?>) ref).entry;
+                synchronized (entry) {
+                    // the value may be reloaded already
+                    if (entry.valueRef == ref) {
+                        entry.removed = true;
+                        mCache.remove(entry.key, entry);
+                    }
+                }
+            } else {
+                Entry<V> entry = mCache.remove(ref);
+                if (entry != null) {
+                    entry.removed = true;
+                }
+            }
+        }
+    }
+
+    private synchronized void evict() {
+        int size = mCache.size();
+        if (size <= mMaxCacheSize) {
+            return;
+        }
+
+        // evict a quarter at once, so that sorting is amortized
+        List<Entry<V>> entries = new ArrayList<>(mCache.values());
+        Collections.sort(entries, new Comparator<Entry<V>>() {
+            @Override
+            public int compare(Entry<V> e1, Entry<V> e2) {
+                return e1.accessTime < e2.accessTime ? -1 : (e1.accessTime == e2.accessTime ? 0 : 1);
+            }
+        });
+        int evictCount = Math.min(entries.size(), size - mMaxCacheSize * 3 / 4);
+        for (int i = 0; i < evictCount; i++) {
+            Entry<V> entry = entries.get(i);
+            synchronized (entry) {
+                removeEntry(entry);
+            }
+        }
+        LogUtil.w(mTag, "cache exceeded max %d, %d evicted", mMaxCacheSize, evictCount);
+    }
+
+    private static boolean keyEquals(Object key, Object other) {
+        return key == other || (key != null && key.equals(other));
+    }
+
+    private static final class Entry<V> {
+        final WeakKey key;
+        volatile ValueRef<V> valueRef;
+        volatile long accessTime;
+        // guarded by this
+        boolean removed;
+
+        Entry(WeakKey key) {
+            this.key = key;
+        }
+
+        V value() {
+            ValueRef<V> ref = valueRef;
+            return ref != null ? ref.get() : null;
+        }
+
+        void setValue(ValueRef<V> ref) {
+            valueRef = ref;
+        }
+    }
+
+    private static final class ValueRef<V> extends WeakReference<V> {
+        final Entry<V> entry;
+
+        ValueRef(V value, ReferenceQueue<Object> queue, Entry<V> entry) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> {
+        private final int mHash;
+
+        WeakKey(Object key, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            mHash = key != null ? key.hashCode() : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            Object key = get();
+            if (key == null) {
+                // collected keys only equal to themselves
+                return false;
+            }
+            if (o instanceof WeakKey) {
+                return keyEquals(key, ((WeakKey) o).get());
+            } else if (o instanceof LookupKey) {
+                return keyEquals(key, ((LookupKey) o).mKey);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+
+    // strong key for lookups only
+    private static final class LookupKey {
+        private final Object mKey;
+
+        LookupKey(Object key) {
+            mKey = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof WeakKey) {
+                Object key = ((WeakKey) o).get();
+                return key != null && keyEquals(mKey, key);
+            } else if (o instanceof LookupKey) {
+                return keyEquals(mKey, ((LookupKey) o).mKey);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return mKey != null ? mKey.hashCode() : 0;
         }
     }
 
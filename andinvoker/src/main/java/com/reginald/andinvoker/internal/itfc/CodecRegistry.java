@@ -0,0 +1,217 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import com.reginald.andinvoker.api.Decoder;
+import com.reginald.andinvoker.api.Encoder;
+import com.reginald.andinvoker.internal.LogUtil;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * thread-safe registry of Encoders/Decoders.
+ * the matched codec is cached by (declared class, annotation types, remote class),
+ * so codecs are scanned only once for each kind of parameter.
+ * {@link CodecSlot}s keep their own resolution until {@link #version()} changes.
+ */
+final class CodecRegistry {
+    private static final String TAG = "CodecRegistry";
+
+    private static final Object NO_CODEC = new Object();
+
+    private final List<EncoderEntry<?, ?>> mEncoders = new CopyOnWriteArrayList<>();
+    private final List<DecoderEntry<?, ?>> mDecoders = new CopyOnWriteArrayList<>();
+
+    // replaced when a codec is added, so resolutions of old codecs are dropped
+    private volatile ConcurrentHashMap<CodecKey, Object> mEncoderCache = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<CodecKey, Object> mDecoderCache = new ConcurrentHashMap<>();
+    private volatile int mVersion;
+
+    synchronized <S, R> void addEncoder(Class<S> srcClass, Class<R> remoteClass, Encoder<S, R> encoder) {
+        mEncoders.add(new EncoderEntry<S, R>(srcClass, remoteClass, encoder));
+        mEncoderCache = new ConcurrentHashMap<>();
+        mVersion++;
+    }
+
+    synchronized <R, S> void addDecoder(Class<R> remoteClass, Class<S> srcClass, Decoder<R, S> decoder) {
+        mDecoders.add(new DecoderEntry<R, S>(remoteClass, srcClass, decoder));
+        mDecoderCache = new ConcurrentHashMap<>();
+        mVersion++;
+    }
+
+    /**
+     * version of registered codecs, changed whenever a codec is added.
+     * @return version
+     */
+    int version() {
+        return mVersion;
+    }
+
+    /**
+     * find the encoder for a parameter
+     * @return encoder or null if no encoder handles it
+     */
+    Encoder<Object, ?> findEncoder(Object obj, Class<?> srcClass, Annotation[] annotations) {
+        ConcurrentHashMap<CodecKey, Object> cache = mEncoderCache;
+        CodecKey key = new CodecKey(srcClass, null, annotations);
+        Object cached = cache.get(key);
+        if (cached == null) {
+            cached = resolveEncoder(obj, srcClass, annotations);
+            cache.put(key, cached);
+        }
+        return cached != NO_CODEC ? (Encoder<Object, ?>) cached : null;
+    }
+
+    /**
+     * find the decoder for a parameter
+     * @return decoder or null if no decoder handles it
+     */
+    Decoder<Object, Object> findDecoder(Object obj, Class<?> srcClass, Annotation[] annotations) {
+        ConcurrentHashMap<CodecKey, Object> cache = mDecoderCache;
+        Class<?> remoteClass = obj.getClass();
+        CodecKey key = new CodecKey(srcClass, remoteClass, annotations);
+        Object cached = cache.get(key);
+        if (cached == null) {
+            cached = resolveDecoder(obj, remoteClass, srcClass, annotations);
+            cache.put(key, cached);
+        }
+        return cached != NO_CODEC ? (Decoder<Object, Object>) cached : null;
+    }
+
+    /**
+     * check whether any decoder may handle objects of remote class type
+     * @param remoteClass declared remote class, e.g. a Parcelable type
+     * @param srcClass declared src class
+     * @return false if objects of type can be used without decoding
+     */
+    boolean mayDecode(Class<?> remoteClass, Class<?> srcClass) {
+        for (DecoderEntry<?, ?> decoderEntry : mDecoders) {
+            if ((decoderEntry.remoteClass.isAssignableFrom(remoteClass) ||
+                    remoteClass.isAssignableFrom(decoderEntry.remoteClass)) &&
+                    decoderEntry.srcClass.isAssignableFrom(srcClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Object encode(Encoder<Object, ?> encoder, Object obj, Class<?> srcClass) {
+        Object result = encoder.encode(obj, (Class<Object>) srcClass);
+        LogUtil.d(TAG, "encode() obj = %s, srcClass = %s  ->  result = %s",
+                obj, srcClass, result);
+        return result;
+    }
+
+    static Object decode(Decoder<Object, Object> decoder, Object obj, Class<?> srcClass) {
+        Object result = decoder.decode(obj, (Class<Object>) srcClass);
+        LogUtil.d(TAG, "decode() obj = %s, remoteClass = %s, " +
+                "srcClass = %s  ->  %s", obj, obj.getClass(), srcClass, result);
+        return result;
+    }
+
+    private Object resolveEncoder(Object obj, Class<?> srcClass, Annotation[] annotations) {
+        for (EncoderEntry<?, ?> encoderEntry : mEncoders) {
+            if (encoderEntry.handles(obj, srcClass)) {
+                Encoder<Object, ?> encoder = (Encoder<Object, ?>) encoderEntry.encoder;
+                if (encoder.handleEncode(obj, (Class<Object>) srcClass, annotations)) {
+                    return encoder;
+                }
+            }
+        }
+        return NO_CODEC;
+    }
+
+    private Object resolveDecoder(Object obj, Class<?> remoteClass, Class<?> srcClass,
+            Annotation[] annotations) {
+        for (DecoderEntry<?, ?> decoderEntry : mDecoders) {
+            if (decoderEntry.handles(obj, remoteClass, srcClass)) {
+                Decoder<Object, Object> decoder = (Decoder<Object, Object>) decoderEntry.decoder;
+                if (decoder.handleDecode(obj, (Class<Object>) srcClass, annotations)) {
+                    return decoder;
+                }
+            }
+        }
+        return NO_CODEC;
+    }
+
+    private static final class CodecKey {
+        private final Class<?> mSrcClass;
+        private final Class<?> mRemoteClass;
+        private final Class<?>[] mAnnotationTypes;
+        private final int mHash;
+
+        CodecKey(Class<?> srcClass, Class<?> remoteClass, Annotation[] annotations) {
+            mSrcClass = srcClass;
+            mRemoteClass = remoteClass;
+            mAnnotationTypes = annotationTypes(annotations);
+            mHash = 31 * (31 * srcClass.hashCode() + (remoteClass != null ? remoteClass.hashCode() : 0)) +
+                    Arrays.hashCode(mAnnotationTypes);
+        }
+
+        private static Class<?>[] annotationTypes(Annotation[] annotations) {
+            if (annotations == null || annotations.length == 0) {
+                return null;
+            }
+            Class<?>[] types = new Class<?>[annotations.length];
+            for (int i = 0; i < annotations.length; i++) {
+                types[i] = annotations[i].annotationType();
+            }
+            return types;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CodecKey)) {
+                return false;
+            }
+            CodecKey key = (CodecKey) o;
+            return mSrcClass == key.mSrcClass && mRemoteClass == key.mRemoteClass &&
+                    Arrays.equals(mAnnotationTypes, key.mAnnotationTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+
+    private static class EncoderEntry<S, R> {
+        private final Class<S> srcClass;
+        private final Class<R> remoteClass;
+        private final Encoder<S, R> encoder;
+
+        public EncoderEntry(Class<S> srcClass, Class<R> remoteClass,
+                Encoder<S, R> encoder) {
+            this.srcClass = srcClass;
+            this.remoteClass = remoteClass;
+            this.encoder = encoder;
+        }
+
+        public boolean handles(Object src, Class<?> srcClass) {
+            return this.srcClass.isAssignableFrom(srcClass);
+        }
+    }
+
+    private static class DecoderEntry<R, S> {
+        private final Class<S> srcClass;
+        private final Class<R> remoteClass;
+        private final Decoder<R, S> decoder;
+
+        public DecoderEntry(Class<R> remoteClass, Class<S> srcClass,
+                Decoder<R, S> encoder) {
+            this.srcClass = srcClass;
+            this.remoteClass = remoteClass;
+            this.decoder = encoder;
+        }
+
+        public boolean handles(Object remoteObj, Class<?> remoteClass, Class<?> srcClass) {
+            return this.remoteClass.isAssignableFrom(remoteClass) &&
+                    this.srcClass.isAssignableFrom(srcClass);
+        }
+    }
+}
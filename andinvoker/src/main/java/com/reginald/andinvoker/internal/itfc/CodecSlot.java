@@ -0,0 +1,93 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.Parcelable;
+
+import com.reginald.andinvoker.api.Decoder;
+import com.reginald.andinvoker.api.Encoder;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * a parameter (or return value) of a method with its resolved encoder/decoder.
+ * resolutions are reused until codecs registered in {@link CodecRegistry} change.
+ */
+final class CodecSlot {
+    final Class<?> type;
+    final Annotation[] annotations;
+    final ParcelWriter writer;
+
+    // primitives are never encoded
+    private final boolean mPrimitive;
+    private final boolean mParcelable;
+
+    private volatile EncoderResolution mEncoder;
+    private volatile DecoderResolution mDecoder;
+
+    CodecSlot(Class<?> type, Annotation[] annotations) {
+        this.type = type;
+        this.annotations = annotations;
+        writer = ParcelWriter.of(type);
+        mPrimitive = type.isPrimitive();
+        mParcelable = Parcelable.class.isAssignableFrom(type);
+    }
+
+    Object encode(CodecRegistry codecs, Object obj) {
+        if (obj == null || mPrimitive) {
+            return obj;
+        }
+
+        int version = codecs.version();
+        EncoderResolution resolution = mEncoder;
+        if (resolution == null || resolution.version != version) {
+            resolution = new EncoderResolution(version, codecs.findEncoder(obj, type, annotations));
+            mEncoder = resolution;
+        }
+
+        return resolution.encoder != null ? CodecRegistry.encode(resolution.encoder, obj, type) : obj;
+    }
+
+    Object decode(CodecRegistry codecs, Object obj) {
+        if (obj == null || mPrimitive) {
+            return obj;
+        }
+
+        int version = codecs.version();
+        Class<?> remoteClass = obj.getClass();
+        DecoderResolution resolution = mDecoder;
+        if (resolution == null || resolution.version != version ||
+                (!resolution.direct && resolution.remoteClass != remoteClass)) {
+            // plain Parcelables are used directly for any remote class
+            boolean direct = mParcelable && !codecs.mayDecode(type, type);
+            resolution = new DecoderResolution(version, remoteClass, direct,
+                    direct ? null : codecs.findDecoder(obj, type, annotations));
+            mDecoder = resolution;
+        }
+
+        return resolution.decoder != null ? CodecRegistry.decode(resolution.decoder, obj, type) : obj;
+    }
+
+    private static final class EncoderResolution {
+        final int version;
+        final Encoder<Object, ?> encoder;
+
+        EncoderResolution(int version, Encoder<Object, ?> encoder) {
+            this.version = version;
+            this.encoder = encoder;
+        }
+    }
+
+    private static final class DecoderResolution {
+        final int version;
+        final Class<?> remoteClass;
+        final boolean direct;
+        final Decoder<Object, Object> decoder;
+
+        DecoderResolution(int version, Class<?> remoteClass, boolean direct,
+                Decoder<Object, Object> decoder) {
+            this.version = version;
+            this.remoteClass = remoteClass;
+            this.direct = direct;
+            this.decoder = decoder;
+        }
+    }
+}
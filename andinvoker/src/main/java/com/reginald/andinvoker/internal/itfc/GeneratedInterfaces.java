@@ -0,0 +1,102 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import com.reginald.andinvoker.InvokeException;
+import com.reginald.andinvoker.internal.Call;
+import com.reginald.andinvoker.internal.LogUtil;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * lookup of proxy/stub classes generated by andinvoker-compiler for {@link com.reginald.andinvoker.api.RemoteInterface}.
+ * the suffixes MUST be the same as those in RemoteInterfaceProcessor.
+ */
+public final class GeneratedInterfaces {
+    private static final String TAG = "GeneratedInterfaces";
+
+    public static final String PROXY_SUFFIX = "$$RemoteProxy";
+    public static final String STUB_SUFFIX = "$$RemoteStub";
+
+    private static final Constructor<?> NOT_GENERATED;
+
+    private static final Map<Class<?>, Constructor<?>> sProxyConstructors = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Constructor<?>> sStubConstructors = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            NOT_GENERATED = Object.class.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new InvokeException(e);
+        }
+    }
+
+    private GeneratedInterfaces() {
+    }
+
+    /**
+     * used by generated classes to resolve interface methods once.
+     * @param clazz interface class
+     * @param name method name
+     * @param parameterTypes parameter types
+     * @return method
+     */
+    public static Method method(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new InvokeException(String.format("generated method %s NOT found in %s",
+                    name, clazz), e);
+        }
+    }
+
+    static <T> T newProxy(InterfaceInfo<T> interfaceInfo, Call call) {
+        Constructor<?> constructor = findConstructor(sProxyConstructors, interfaceInfo.interfaceClass,
+                PROXY_SUFFIX, InterfaceInfo.class, Call.class);
+        if (constructor == null) {
+            return null;
+        }
+
+        try {
+            return (T) constructor.newInstance(interfaceInfo, call);
+        } catch (Exception e) {
+            throw new InvokeException("generated interface proxy init error!", e);
+        }
+    }
+
+    static <T> Call newStub(InterfaceInfo<T> interfaceInfo) {
+        Constructor<?> constructor = findConstructor(sStubConstructors, interfaceInfo.interfaceClass,
+                STUB_SUFFIX, InterfaceInfo.class);
+        if (constructor == null) {
+            return null;
+        }
+
+        try {
+            return (Call) constructor.newInstance(interfaceInfo);
+        } catch (Exception e) {
+            throw new InvokeException("generated interface stub init error!", e);
+        }
+    }
+
+    private static Constructor<?> findConstructor(Map<Class<?>, Constructor<?>> cache,
+            Class<?> interfaceClass, String suffix, Class<?>... parameterTypes) {
+        Constructor<?> constructor = cache.get(interfaceClass);
+        if (constructor == null) {
+            constructor = NOT_GENERATED;
+            try {
+                Class<?> generatedClass = Class.forName(interfaceClass.getName() + suffix, true,
+                        interfaceClass.getClassLoader());
+                constructor = generatedClass.getConstructor(parameterTypes);
+            } catch (ClassNotFoundException e) {
+                LogUtil.d(TAG, "findConstructor() no generated %s for %s, use reflection",
+                        suffix, interfaceClass);
+            } catch (Exception e) {
+                LogUtil.w(TAG, "findConstructor() invalid generated class for " + interfaceClass, e);
+            }
+            cache.put(interfaceClass, constructor);
+        }
+
+        return constructor != NOT_GENERATED ? constructor : null;
+    }
+}
@@ -6,9 +6,7 @@ import android.os.Parcelable;
 import java.util.Arrays;
 
 public class InterfaceCallInfo implements Parcelable {
-    public String interfaceName;
-    public String interfaceClass;
-    public String methodName;
+    public int methodId;
 
     public Object[] args;
 
@@ -24,32 +22,25 @@ public class InterfaceCallInfo implements Parcelable {
         }
     };
 
-    public InterfaceCallInfo(String interfaceName, String interfaceClass, String methodName, Object[] args) {
-        this.interfaceName = interfaceName;
-        this.interfaceClass = interfaceClass;
-        this.methodName = methodName;
+    public InterfaceCallInfo(int methodId, Object[] args) {
+        this.methodId = methodId;
         this.args = args;
     }
 
     public InterfaceCallInfo(InterfaceCallInfo callInfo) {
-        this.interfaceName = callInfo.interfaceName;
-        this.interfaceClass = callInfo.interfaceClass;
-        this.methodName = callInfo.methodName;
+        this.methodId = callInfo.methodId;
         this.args = callInfo.args;
     }
 
     public InterfaceCallInfo(Parcel parcel) {
-        interfaceName = parcel.readString();
-        interfaceClass = parcel.readString();
-        methodName = parcel.readString();
+        methodId = parcel.readInt();
         args = parcel.readArray(InterfaceCallInfo.class.getClassLoader());
     }
 
     @Override
     public String toString() {
-        return String.format("CallInfo [ interfaceName = %s, interfaceClass = %s, " +
-                        "methodName = %s, args = %s ]",
-                interfaceName, interfaceClass, methodName, args != null ? Arrays.asList(args) : null);
+        return String.format("CallInfo [ methodId = %d, args = %s ]",
+                methodId, args != null ? Arrays.asList(args) : null);
     }
 
     @Override
@@ -59,9 +50,7 @@ public class InterfaceCallInfo implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel parcel, int i) {
-        parcel.writeString(interfaceName);
-        parcel.writeString(interfaceClass);
-        parcel.writeString(methodName);
+        parcel.writeInt(methodId);
         parcel.writeArray(args);
     }
 }
@@ -1,47 +1,61 @@
 package com.reginald.andinvoker.internal.itfc;
 
+import android.os.Binder;
 import android.os.Bundle;
+import android.os.DeadObjectException;
 import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Process;
 import android.os.RemoteException;
 
 import com.reginald.andinvoker.AndInvoker;
 import com.reginald.andinvoker.InvokeException;
+import com.reginald.andinvoker.OverloadedException;
 import com.reginald.andinvoker.internal.LogUtil;
+import com.reginald.andinvoker.internal.metrics.InvokeMetrics;
 import com.reginald.andinvoker.api.Codec;
 import com.reginald.andinvoker.api.Decoder;
 import com.reginald.andinvoker.api.Encoder;
+import com.reginald.andinvoker.api.IMetricsListener;
+import com.reginald.andinvoker.api.ITracer;
 import com.reginald.andinvoker.api._IRemote;
+import com.reginald.andinvoker.internal.AsyncExecutor;
 import com.reginald.andinvoker.internal.Call;
-import com.reginald.andinvoker.internal.CallWrapper;
+import com.reginald.andinvoker.internal.InvokeTrace;
+import com.reginald.andinvoker.internal.ServiceDispatcher;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
 
 public class InterfaceHandler {
     private static final String TAG = "InterfaceHandler";
 
-    private static final List<EncoderEntry<?, ?>> ENCODERS = new ArrayList<>();
-    private static final List<DecoderEntry<?, ?>> DECODERS = new ArrayList<>();
+    static final String DESCRIPTOR = Call.class.getName();
+    // interface call with args written straight to the parcel, out of the range of aidl methods
+    static final int TRANSACTION_INTERFACE_CALL = IBinder.LAST_CALL_TRANSACTION;
+
+    private static final CodecRegistry CODECS = new CodecRegistry();
+
+    // retries of an idempotent call on a rebindable target
+    private static final int MAX_REBIND_RETRIES = 3;
 
     static {
         addCodec(Object.class, InterfaceParcelable.class, new RemoteInterfaceCodec());
     }
 
     public static <S, R> void addCodec(Class<S> srcClass, Class<R> remoteClass, Codec<S, R> codec) {
-        ENCODERS.add(new EncoderEntry<S, R>(srcClass, remoteClass, codec));
-        DECODERS.add(new DecoderEntry<R, S>(remoteClass, srcClass, codec));
+        CODECS.addEncoder(srcClass, remoteClass, codec);
+        CODECS.addDecoder(remoteClass, srcClass, codec);
     }
 
     public static <S, R> void addEncoder(Class<S> srcClass, Class<R> remoteClass, Encoder<S, R> encoder) {
-        ENCODERS.add(new EncoderEntry<S, R>(srcClass, remoteClass, encoder));
+        CODECS.addEncoder(srcClass, remoteClass, encoder);
     }
 
     public static <R, S> void addDecoder(Class<R> remoteClass, Class<S> srcClass, Decoder<R, S> decoder) {
-        DECODERS.add(new DecoderEntry<R, S>(remoteClass, srcClass, decoder));
+        CODECS.addDecoder(remoteClass, srcClass, decoder);
     }
 
     private static Bundle bundle(InterfaceCallInfo callInfo) {
@@ -56,191 +70,384 @@ public class InterfaceHandler {
         return callInfo;
     }
 
-    private static void handleEncodeParams(Object[] params, Class[] types, Annotation[][] annotations) {
-        if (params != null && params.length > 0) {
-            for (int i = 0; i < params.length; i++) {
-                if (params[i] != null) {
-                    params[i] = encodeInternal(params[i], types[i], annotations[i]);
-                }
-            }
+    static <T> Call buildStub(final InterfaceInfo<T> interfaceInfo) {
+        LogUtil.d(TAG, "buildStub() for interfaceInfo = %s", interfaceInfo);
+
+        Call generatedStub = GeneratedInterfaces.newStub(interfaceInfo);
+        if (generatedStub != null) {
+            return generatedStub;
         }
+
+        final Method[] methods = interfaceInfo.methods();
+        return new InterfaceStub<T>(interfaceInfo, methods) {
+            @Override
+            protected Object dispatch(int index, T target, Object[] args) throws Throwable {
+                return methods[index].invoke(target, args);
+            }
+        };
     }
 
-    private static void handleDecodeParams(Object[] params, Class[] types, Annotation[][] annotations) {
-        if (params != null && params.length > 0) {
-            for (int i = 0; i < params.length; i++) {
-                if (params[i] != null) {
-                    params[i] = decodeInternal(params[i], types[i], annotations[i]);
+    static <T> T buildProxy(final InterfaceInfo<T> interfaceInfo, final Call call) {
+        if (call != null) {
+            LogUtil.d(TAG, "buildProxy() for interfaceInfo = %s, call = %s", interfaceInfo, call);
+
+            T generatedProxy = GeneratedInterfaces.newProxy(interfaceInfo, call);
+            if (generatedProxy != null) {
+                return generatedProxy;
+            }
+
+            InvocationHandler invocationHandler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    LogUtil.d(TAG, "invoke on method = %s, args = %s", method, args);
+                    if (method.getDeclaringClass() == Object.class) {
+                        // resilient proxies keep their identity after rebound
+                        return method.invoke(call instanceof RebindableCall ? call : call.asBinder(), args);
+                    }
+
+                    if (method.getDeclaringClass() == _IRemote.class) {
+                        // return binder anyway
+                        return call.asBinder();
+                    }
+
+                    return handleProxyCall(interfaceInfo, call, interfaceInfo.methodIndex(method), args);
                 }
+            };
+            try {
+                T instance = (T) Proxy.newProxyInstance(AndInvoker.class.getClassLoader(),
+                        new Class[]{interfaceInfo.interfaceClass, _IRemote.class}, invocationHandler);
+                return instance;
+            } catch (Exception e) {
+                throw new InvokeException("remote interface proxy init error!", e);
             }
         }
+        return null;
     }
 
-    private static <S> Object encodeInternal(S obj, Class<S> srcClass, Annotation[] annotations) {
-        for (EncoderEntry<?, ?> encoderEntry : ENCODERS) {
-            if (encoderEntry.handles(obj, srcClass)) {
-                Encoder<S, ?> encoder = (Encoder<S, ?>) encoderEntry.encoder;
-                if (encoder.handleEncode(obj, srcClass, annotations)) {
-                    Object result = encoder.encode(obj, srcClass);
-                    LogUtil.d(TAG, "encodeInternal() obj = %s, srcClass = %s  ->  result = %s",
-                            obj, srcClass, result);
-                    return result;
-                }
-            }
+    static Bundle handleStubCall(InterfaceInfo<?> interfaceInfo, Bundle params,
+            StubDispatcher dispatcher) {
+        InterfaceCallInfo callInfo = InterfaceHandler.unbundle(params);
+        if (callInfo != null) {
+            LogUtil.d(TAG, "interface call: callInfo = %s, interfaceInfo = %s",
+                    callInfo, interfaceInfo);
+            InterfaceCallInfo resultInfo = new InterfaceCallInfo(callInfo);
+            boolean remoteCall = Binder.getCallingPid() != Process.myPid();
+            resultInfo.args = new Object[]{dispatchStub(interfaceInfo.dispatcher(),
+                    findPlan(interfaceInfo, callInfo.methodId), callInfo.methodId, callInfo.args,
+                    dispatcher, remoteCall)};
+            return InterfaceHandler.bundle(resultInfo);
         }
 
-        return obj;
+        throw new InvokeException(String.format("no remote interface methods found for %s",
+                callInfo));
     }
 
-    private static <R, S> S decodeInternal(R obj, Class<S> srcClass, Annotation[] annotations) {
-        for (DecoderEntry<?, ?> decoderEntry : DECODERS) {
-            Class<?> remoteClass = obj.getClass();
-            if (decoderEntry.handles(obj, remoteClass, srcClass)) {
-                Decoder<R, S> decoder = (Decoder<R, S>) decoderEntry.decoder;
-                if (decoder.handleDecode(obj, srcClass, annotations)) {
-                    S result = decoder.decode(obj, srcClass);
-                    LogUtil.d(TAG, "decodeInternal() obj = %s, remoteClass = %s, " +
-                            "srcClass = %s  ->  %s", obj, remoteClass, srcClass, result);
-                    return result;
+    static void handleStubTransact(InterfaceInfo<?> interfaceInfo, Parcel data, Parcel reply,
+            StubDispatcher dispatcher) {
+        final int methodId = data.readInt();
+        final MethodPlan plan = findPlan(interfaceInfo, methodId);
+        InvokeMetrics.tagServer(InvokeMetrics.OP_INTERFACE, plan.metricsName);
+        final Object[] args;
+        ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_READ, plan.traceName);
+        try {
+            args = plan.readParams(data);
+        } finally {
+            InvokeTrace.end(tracer);
+        }
+        if (LogUtil.LOG_ENABLED) {
+            LogUtil.d(TAG, "interface transact: methodId = %d, interfaceInfo = %s",
+                    methodId, interfaceInfo);
+        }
+        ServiceDispatcher serviceDispatcher = interfaceInfo.dispatcher();
+        if (reply == null && !serviceDispatcher.isInline()) {
+            // oneway calls do NOT pin the binder thread, args are read already
+            final StubDispatcher stubDispatcher = dispatcher;
+            serviceDispatcher.execute(plan.priority, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dispatchStub(plan, methodId, args, stubDispatcher);
+                    } catch (Throwable t) {
+                        LogUtil.e(TAG, "handleStubTransact() oneway error!", t);
+                    }
                 }
+            });
+            return;
+        }
+
+        // the reply is written on this binder thread, remote callers can NOT be handed off
+        boolean remoteCall = Binder.getCallingPid() != Process.myPid();
+        Object result = dispatchStub(serviceDispatcher, plan, methodId, args, dispatcher, remoteCall);
+        if (reply != null) {
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_WRITE, plan.traceName);
+            try {
+                reply.writeNoException();
+                plan.writeResult(reply, result);
+            } finally {
+                InvokeTrace.end(tracer);
             }
         }
+    }
 
-        return (S) obj;
+    static Object handleStubLocal(InterfaceInfo<?> interfaceInfo, int methodId, Object[] args,
+            StubDispatcher dispatcher) {
+        return dispatchStub(interfaceInfo.dispatcher(), findPlan(interfaceInfo, methodId), methodId,
+                args, dispatcher, false);
     }
 
-    static <T> Call buildStub(final InterfaceInfo<T> interfaceInfo) {
-        LogUtil.d(TAG, "buildStub() for interfaceInfo = %s", interfaceInfo);
+    private static MethodPlan findPlan(InterfaceInfo<?> interfaceInfo, int methodId) {
+        MethodPlan plan = interfaceInfo.planAt(methodId);
+        if (plan == null) {
+            throw new InvokeException(String.format("no remote interface methods found for id %d in %s",
+                    methodId, interfaceInfo.interfaceClass));
+        }
+        return plan;
+    }
 
-        CallWrapper callWrapper = new CallWrapper() {
+    /**
+     * sync calls run on the service dispatcher, so that its order and limits are kept.
+     * remote calls fail fast with {@link OverloadedException} instead of queueing on a binder thread.
+     */
+    private static Object dispatchStub(ServiceDispatcher serviceDispatcher, final MethodPlan plan,
+            final int methodId, final Object[] args, final StubDispatcher dispatcher, boolean remoteCall) {
+        if (serviceDispatcher == ServiceDispatcher.INLINE) {
+            return dispatchStub(plan, methodId, args, dispatcher);
+        }
+        Callable<Object> callable = new Callable<Object>() {
             @Override
-            public Bundle onCall(Bundle params) {
-                InterfaceCallInfo callInfo = InterfaceHandler.unbundle(params);
-                if (callInfo != null) {
-                    String methodName = callInfo.methodName;
-                    Method method = interfaceInfo.fetchMethod(methodName);
-                    LogUtil.d(TAG, "interface call: callInfo = %s, interfaceInfo = %s, method = %s",
-                            callInfo, interfaceInfo, method);
-                    if (method != null) {
-                        try {
-                            InterfaceHandler.handleDecodeParams(callInfo.args,
-                                    method.getParameterTypes(), method.getParameterAnnotations());
-
-                            Object result = method.invoke(interfaceInfo.object, callInfo.args);
-
-                            Object[] resultArgs = new Object[]{result};
-                            InterfaceHandler.handleEncodeParams(resultArgs, new Class[]{method.getReturnType()},
-                                    new Annotation[][]{method.getAnnotations()});
-                            InterfaceCallInfo resultInfo = new InterfaceCallInfo(callInfo);
-                            resultInfo.args = resultArgs;
-                            return InterfaceHandler.bundle(resultInfo);
-                        } catch (Throwable t) {
-                            throw new InvokeException(t);
-                        }
-                    }
+            public Object call() {
+                return dispatchStub(plan, methodId, args, dispatcher);
+            }
+        };
+        return remoteCall ? serviceDispatcher.callIfIdle(plan.priority, callable) :
+                serviceDispatcher.call(plan.priority, callable);
+    }
+
+    private static Object dispatchStub(MethodPlan plan, int methodId, Object[] args,
+            StubDispatcher dispatcher) {
+        try {
+            ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_DECODE, plan.traceName);
+            try {
+                plan.decodeParams(CODECS, args);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+
+            Object result;
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_DISPATCH, plan.traceName);
+            try {
+                result = dispatcher.dispatch(methodId, plan.method, args);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_ENCODE, plan.traceName);
+            try {
+                return plan.result.encode(CODECS, result);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+        } catch (Throwable t) {
+            throw new InvokeException(t);
+        }
+    }
+
+    static Object handleProxyCall(InterfaceInfo<?> interfaceInfo, Call call, int methodIndex,
+            Object[] args) {
+        MethodPlan plan = interfaceInfo.planAt(methodIndex);
+        int remoteMethodId = interfaceInfo.remoteMethodId(methodIndex);
+        if (plan == null || remoteMethodId == MethodTable.NO_METHOD) {
+            throw new InvokeException(String.format("method %s NOT supported by remote %s",
+                    plan, interfaceInfo.interfaceClass));
+        }
+
+        InvokeMetrics.Record record = InvokeMetrics.begin(InvokeMetrics.SIDE_CLIENT,
+                InvokeMetrics.OP_INTERFACE, null, plan.metricsName);
+        try {
+            ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_ENCODE, plan.traceName);
+            try {
+                plan.encodeParams(CODECS, args);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+            if (LogUtil.LOG_ENABLED) {
+                LogUtil.d(TAG, "interface proxy call: remoteMethodId = %d, plan = %s", remoteMethodId, plan);
+            }
+            if (call instanceof RebindableCall) {
+                return callRebindable(interfaceInfo, plan, (RebindableCall) call, methodIndex, args, record);
+            }
+            return callTarget(plan, call, remoteMethodId, args, record);
+        } catch (RemoteException e) {
+            InvokeMetrics.fail(record, e);
+            if (LogUtil.LOG_ENABLED) {
+                e.printStackTrace();
+            }
+            throw new InvokeException(e);
+        } catch (Throwable t) {
+            InvokeMetrics.fail(record, t);
+            if (LogUtil.LOG_ENABLED) {
+                t.printStackTrace();
+            }
+            OverloadedException overloaded = OverloadedException.from(t);
+            if (overloaded != null) {
+                throw overloaded;
+            }
+            throw new InvokeException(t);
+        } finally {
+            InvokeMetrics.end(record);
+        }
+    }
+
+    private static Object callTarget(MethodPlan plan, Call call, int methodId, Object[] args,
+            InvokeMetrics.Record record) throws RemoteException {
+        if (call instanceof InterfaceStub) {
+            return callLocal(plan, (InterfaceStub<?>) call, methodId, args);
+        }
+        return transact(plan, call, methodId, args, record);
+    }
+
+    /**
+     * call the bound target. after it dies, the next call binds again, and idempotent calls
+     * are retried at most MAX_REBIND_RETRIES times.
+     */
+    private static Object callRebindable(InterfaceInfo<?> interfaceInfo, MethodPlan plan,
+            RebindableCall call, int methodIndex, Object[] args, InvokeMetrics.Record record)
+            throws RemoteException {
+        int retries = 0;
+        while (true) {
+            Call target;
+            try {
+                target = call.target();
+            } catch (InvokeException e) {
+                if (!plan.idempotent || retries++ >= MAX_REBIND_RETRIES) {
+                    throw e;
                 }
+                sleep(call.rebindDelay());
+                continue;
+            }
 
-                throw new InvokeException(String.format("no remote interface methods found for %s",
-                        callInfo));
+            int remoteMethodId = interfaceInfo.remoteMethodId(methodIndex);
+            if (remoteMethodId == MethodTable.NO_METHOD) {
+                throw new InvokeException(String.format("method %s NOT supported by remote %s",
+                        plan, interfaceInfo.interfaceClass));
             }
-        };
 
-        return callWrapper;
+            try {
+                return callTarget(plan, target, remoteMethodId, args, record);
+            } catch (DeadObjectException e) {
+                call.unbind(target);
+                if (!plan.idempotent || retries++ >= MAX_REBIND_RETRIES) {
+                    throw e;
+                }
+                LogUtil.w(TAG, "callRebindable() retry %s after the remote died", plan);
+            }
+        }
     }
 
-    static <T> T buildProxy(final InterfaceInfo<T> interfaceInfo, final Call call) {
-        if (call != null) {
-            LogUtil.d(TAG, "buildProxy() for interfaceInfo = %s, call = %s", interfaceInfo, call);
-            InvocationHandler invocationHandler = new InvocationHandler() {
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvokeException(e);
+        }
+    }
+
+    private static Object callLocal(final MethodPlan plan, final InterfaceStub<?> stub,
+            final int methodId, final Object[] args) {
+        if (plan.oneway) {
+            // local call is NOT oneway
+            AsyncExecutor.execute(new Runnable() {
                 @Override
-                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                public void run() {
                     try {
-                        LogUtil.d(TAG, "invoke on method = %s, args = %s", method, args);
-                        IBinder remoteBinder = call.asBinder();
-                        if (method.getDeclaringClass() == Object.class) {
-                            return method.invoke(remoteBinder, args);
-                        }
-
-                        if (method.getDeclaringClass() == _IRemote.class) {
-                            // return binder anyway
-                            return remoteBinder;
-                        }
-
-                        handleEncodeParams(args, method.getParameterTypes(), method.getParameterAnnotations());
-                        InterfaceCallInfo callInfo = new InterfaceCallInfo(null,
-                                interfaceInfo.interfaceClass.getName(), method.getName(), args);
-                        LogUtil.d(TAG, "interface proxy call: callInfo = %s", callInfo);
-                        Bundle bundle = InterfaceHandler.bundle(callInfo);
-                        Bundle result = call.onCall(bundle);
-                        InterfaceCallInfo resultCallInfo = InterfaceHandler.unbundle(result);
-                        if (resultCallInfo != null) {
-                            Object[] resultObj = resultCallInfo.args;
-                            if (resultObj != null && resultObj.length == 1) {
-                                handleDecodeParams(resultObj, new Class[]{method.getReturnType()},
-                                        new Annotation[][]{method.getAnnotations()});
-                                return resultObj[0];
-                            } else {
-                                return null;
-                            }
-                        }
-                    } catch (RemoteException e) {
-                        if (LogUtil.LOG_ENABLED) {
-                            e.printStackTrace();
-                        }
-                        throw new InvokeException(e);
+                        stub.callLocal(methodId, args);
                     } catch (Throwable t) {
-                        if (LogUtil.LOG_ENABLED) {
-                            t.printStackTrace();
-                        }
-                        throw new InvokeException(t);
+                        LogUtil.e(TAG, "callLocal() oneway error!", t);
                     }
-
-                    throw new InvokeException("remote interface invoke error!");
                 }
-            };
-            try {
-                T instance = (T) Proxy.newProxyInstance(AndInvoker.class.getClassLoader(),
-                        new Class[]{interfaceInfo.interfaceClass, _IRemote.class}, invocationHandler);
-                return instance;
-            } catch (Exception e) {
-                throw new InvokeException("remote interface proxy init error!", e);
-            }
+            });
+            return null;
         }
-        return null;
+
+        return plan.result.decode(CODECS, stub.callLocal(methodId, args));
     }
 
-    private static class EncoderEntry<S, R> {
-        private final Class<S> srcClass;
-        private final Class<R> remoteClass;
-        private final Encoder<S, R> encoder;
+    private static Object transact(MethodPlan plan, Call call, int methodId, Object[] args,
+            InvokeMetrics.Record record) throws RemoteException {
+        Parcel data = Parcel.obtain();
+        Parcel reply = plan.oneway ? null : Parcel.obtain();
+        try {
+            ITracer tracer = InvokeTrace.begin(InvokeTrace.SECTION_WRITE, plan.traceName);
+            try {
+                data.writeInterfaceToken(DESCRIPTOR);
+                data.writeInt(methodId);
+                plan.writeParams(data, args);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
 
-        public EncoderEntry(Class<S> srcClass, Class<R> remoteClass,
-                Encoder<S, R> encoder) {
-            this.srcClass = srcClass;
-            this.remoteClass = remoteClass;
-            this.encoder = encoder;
-        }
+            boolean transacted;
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_TRANSACT, plan.traceName);
+            try {
+                transacted = call.asBinder().transact(TRANSACTION_INTERFACE_CALL, data, reply,
+                        plan.oneway ? IBinder.FLAG_ONEWAY : 0);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+            if (!transacted) {
+                // remote of old protocol
+                return callBundle(plan, call, methodId, args);
+            }
+
+            if (reply == null) {
+                InvokeMetrics.setBytes(record, data.dataSize(), IMetricsListener.UNKNOWN_BYTES);
+                return null;
+            }
+            InvokeMetrics.setBytes(record, data.dataSize(), reply.dataSize());
+
+            Object result;
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_READ, plan.traceName);
+            try {
+                reply.readException();
+                result = plan.readResult(reply);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
 
-        public boolean handles(Object src, Class<?> srcClass) {
-            return this.srcClass.isAssignableFrom(srcClass);
+            tracer = InvokeTrace.begin(InvokeTrace.SECTION_DECODE, plan.traceName);
+            try {
+                return plan.result.decode(CODECS, result);
+            } finally {
+                InvokeTrace.end(tracer);
+            }
+        } finally {
+            data.recycle();
+            if (reply != null) {
+                reply.recycle();
+            }
         }
     }
 
-    private static class DecoderEntry<R, S> {
-        private final Class<S> srcClass;
-        private final Class<R> remoteClass;
-        private final Decoder<R, S> decoder;
-
-        public DecoderEntry(Class<R> remoteClass, Class<S> srcClass,
-                Decoder<R, S> encoder) {
-            this.srcClass = srcClass;
-            this.remoteClass = remoteClass;
-            this.decoder = encoder;
+    private static Object callBundle(MethodPlan plan, Call call, int methodId, Object[] args)
+            throws RemoteException {
+        Bundle result = call.onCall(bundle(new InterfaceCallInfo(methodId, args)));
+        InterfaceCallInfo resultCallInfo = unbundle(result);
+        if (resultCallInfo == null) {
+            throw new InvokeException("remote interface invoke error!");
         }
 
-        public boolean handles(Object remoteObj, Class<?> remoteClass, Class<?> srcClass) {
-            return this.remoteClass.isAssignableFrom(remoteClass) &&
-                    this.srcClass.isAssignableFrom(srcClass);
+        Object[] resultObj = resultCallInfo.args;
+        if (resultObj != null && resultObj.length == 1) {
+            return plan.result.decode(CODECS, resultObj[0]);
         }
+        return null;
+    }
+
+    interface StubDispatcher {
+        Object dispatch(int methodId, Method method, Object[] args) throws Throwable;
     }
 }
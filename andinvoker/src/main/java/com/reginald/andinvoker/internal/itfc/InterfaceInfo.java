@@ -4,29 +4,34 @@ import android.os.IBinder;
 
 import com.reginald.andinvoker.internal.LogUtil;
 import com.reginald.andinvoker.internal.Call;
+import com.reginald.andinvoker.internal.ServiceDispatcher;
 import com.reginald.andinvoker.internal.cache.TokenCache;
 
 import java.lang.reflect.Method;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class InterfaceInfo<T> {
     private static final String TAG = "InterfaceInfo";
 
-    private static final Map<Class<?>, TokenCache<Object, Call>> sStubCache =
+    private static final ConcurrentMap<Class<?>, TokenCache<Object, Call>> sStubCache =
             new ConcurrentHashMap<>();
-    private static final Map<Class<?>, TokenCache<IBinder, Object>> sProxyCache =
+    private static final ConcurrentMap<Class<?>, TokenCache<IBinder, Object>> sProxyCache =
             new ConcurrentHashMap<>();
 
     public final Class<T> interfaceClass;
     public final T object;
 
-    private volatile Map<String, Method> interfaceMethods;
-    private final Object interfaceMethodsLock = new Object();
+    private final MethodTable mMethodTable;
+    private volatile int[] mRemoteMethodIds;
 
     private volatile Call mStub;
     private volatile T mProxy;
 
+    // where stub calls run
+    private volatile ServiceDispatcher mDispatcher = ServiceDispatcher.INLINE;
+
     // TODO need cache for interfaces
     public InterfaceInfo(Class<T> clazz) {
         this(null, clazz);
@@ -35,11 +40,56 @@ public class InterfaceInfo<T> {
     public InterfaceInfo(T obj, Class<T> clazz) {
         interfaceClass = clazz;
         object = obj;
+        mMethodTable = MethodTable.of(clazz);
+    }
+
+    /**
+     * fetch local method by method id
+     * @param methodId method id
+     * @return method or null
+     */
+    public Method fetchMethod(int methodId) {
+        return mMethodTable.methodAt(methodId);
+    }
+
+    /**
+     * signatures of local methods ordered by method id, sent to remote for method id negotiation.
+     * @return signatures
+     */
+    public String[] methodSignatures() {
+        return mMethodTable.signatures;
+    }
+
+    public void setDispatcher(ServiceDispatcher dispatcher) {
+        mDispatcher = dispatcher != null ? dispatcher : ServiceDispatcher.INLINE;
+    }
+
+    public ServiceDispatcher dispatcher() {
+        return mDispatcher;
     }
 
-    public Method fetchMethod(String methodName) {
-        initMethods();
-        return interfaceMethods.get(methodName);
+    int methodIndex(Method method) {
+        return mMethodTable.indexOf(method);
+    }
+
+    Method methodAt(int methodIndex) {
+        return mMethodTable.methodAt(methodIndex);
+    }
+
+    Method[] methods() {
+        return mMethodTable.methods;
+    }
+
+    MethodPlan planAt(int methodIndex) {
+        return mMethodTable.planAt(methodIndex);
+    }
+
+    int remoteMethodId(int methodIndex) {
+        int[] remoteMethodIds = mRemoteMethodIds;
+        if (remoteMethodIds == null || methodIndex < 0 || methodIndex >= remoteMethodIds.length) {
+            return MethodTable.NO_METHOD;
+        }
+        return remoteMethodIds[methodIndex];
     }
 
     public Call fetchStub() {
@@ -50,11 +100,7 @@ public class InterfaceInfo<T> {
         if (mStub == null) {
             synchronized (this) {
                 if (mStub == null) {
-                    TokenCache<Object, Call> cache = sStubCache.get(interfaceClass);
-                    if (cache == null) {
-                        cache = TokenCache.build("InterfaceInfo#Stub#" + interfaceClass.getSimpleName());
-                        sStubCache.put(interfaceClass, cache);
-                    }
+                    TokenCache<Object, Call> cache = cacheOf(sStubCache, interfaceClass, "InterfaceInfo#Stub#");
 
                     mStub = cache.get(object, new TokenCache.Loader<Call>() {
                         @Override
@@ -70,19 +116,39 @@ public class InterfaceInfo<T> {
         return mStub;
     }
 
-    public T fetchProxy(final Call callback) {
+    /**
+     * build a proxy on a rebindable target, which is NOT cached by binder
+     * @param call bound target
+     * @return proxy instance
+     */
+    public T fetchProxy(RebindableCall call) {
+        if (mProxy == null) {
+            synchronized (this) {
+                if (mProxy == null) {
+                    mProxy = InterfaceHandler.buildProxy(this, call);
+                }
+            }
+        }
+        return mProxy;
+    }
+
+    void negotiate(String[] remoteMethodSignatures) {
+        mRemoteMethodIds = mMethodTable.negotiate(remoteMethodSignatures);
+    }
+
+    public T fetchProxy(final Call callback, String[] remoteMethodSignatures) {
         if (callback == null) {
             return null;
         }
 
+        if (mRemoteMethodIds == null) {
+            mRemoteMethodIds = mMethodTable.negotiate(remoteMethodSignatures);
+        }
+
         if (mProxy == null) {
             synchronized (this) {
                 if (mProxy == null) {
-                    TokenCache<IBinder, Object> cache = sProxyCache.get(interfaceClass);
-                    if (cache == null) {
-                        cache = TokenCache.build("InterfaceInfo#Proxy#" + interfaceClass.getSimpleName());
-                        sProxyCache.put(interfaceClass, cache);
-                    }
+                    TokenCache<IBinder, Object> cache = cacheOf(sProxyCache, interfaceClass, "InterfaceInfo#Proxy#");
 
                     mProxy = (T) cache.get(callback.asBinder(), new TokenCache.Loader<Object>() {
                         @Override
@@ -99,27 +165,24 @@ public class InterfaceInfo<T> {
         return mProxy;
     }
 
-    private void initMethods() {
-        if (interfaceMethods == null) {
-            synchronized (interfaceMethodsLock) {
-                if (interfaceMethods == null) {
-                    interfaceMethods = new ConcurrentHashMap<>();
-                    Method[] declaredMethods = interfaceClass.getDeclaredMethods();
-                    if (declaredMethods != null) {
-                        for (Method method : declaredMethods) {
-                            interfaceMethods.put(method.getName(), method);
-                        }
-                    }
-                }
+    private static <K, V> TokenCache<K, V> cacheOf(ConcurrentMap<Class<?>, TokenCache<K, V>> caches,
+            Class<?> interfaceClass, String name) {
+        TokenCache<K, V> cache = caches.get(interfaceClass);
+        if (cache == null) {
+            TokenCache<K, V> newCache = TokenCache.build(name + interfaceClass.getSimpleName());
+            cache = caches.putIfAbsent(interfaceClass, newCache);
+            if (cache == null) {
+                cache = newCache;
             }
         }
+        return cache;
     }
 
     @Override
     public String toString() {
         if (LogUtil.LOG_ENABLED) {
             return String.format("InterfaceInfo[ interfaceClass = %s, object = %s, methods = %s ]",
-                    interfaceClass, object, interfaceMethods);
+                    interfaceClass, object, Arrays.toString(mMethodTable.signatures));
         } else {
             return super.toString();
         }
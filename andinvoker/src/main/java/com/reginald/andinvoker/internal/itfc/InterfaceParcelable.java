@@ -7,12 +7,23 @@ import com.reginald.andinvoker.internal.BinderParcelable;
 
 public class InterfaceParcelable extends BinderParcelable {
 
-    public InterfaceParcelable(IBinder iBinder) {
+    // signatures of remote methods ordered by method id
+    public String[] methods;
+
+    public InterfaceParcelable(IBinder iBinder, String[] methods) {
         super(iBinder);
+        this.methods = methods;
     }
 
     public InterfaceParcelable(Parcel parcel) {
         super(parcel);
+        methods = parcel.createStringArray();
+    }
+
+    @Override
+    public void writeToParcel(Parcel parcel, int i) {
+        super.writeToParcel(parcel, i);
+        parcel.writeStringArray(methods);
     }
 
     public static final Creator<BinderParcelable> CREATOR = new Creator<BinderParcelable>() {
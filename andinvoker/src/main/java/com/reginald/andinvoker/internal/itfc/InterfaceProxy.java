@@ -0,0 +1,57 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.IBinder;
+
+import com.reginald.andinvoker.api._IRemote;
+import com.reginald.andinvoker.internal.Call;
+
+import java.lang.reflect.Method;
+
+/**
+ * base class of proxies generated for {@link com.reginald.andinvoker.api.RemoteInterface}.
+ * remote calls are made without {@link java.lang.reflect.Proxy}.
+ */
+public abstract class InterfaceProxy implements _IRemote {
+    private final InterfaceInfo<?> mInterfaceInfo;
+    private final Call mCall;
+    // method index in InterfaceInfo for each generated method
+    private final int[] mMethodIndexes;
+
+    protected InterfaceProxy(InterfaceInfo<?> interfaceInfo, Call call, Method[] methods) {
+        mInterfaceInfo = interfaceInfo;
+        mCall = call;
+        mMethodIndexes = new int[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            mMethodIndexes[i] = interfaceInfo.methodIndex(methods[i]);
+        }
+    }
+
+    protected final Object invokeRemote(int index, Object[] args) {
+        return InterfaceHandler.handleProxyCall(mInterfaceInfo, mCall, mMethodIndexes[index], args);
+    }
+
+    @Override
+    public IBinder _asBinder() {
+        return mCall.asBinder();
+    }
+
+    // resilient proxies keep their identity after rebound
+    private Object identity() {
+        return mCall instanceof RebindableCall ? mCall : _asBinder();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return identity().equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return identity().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return _asBinder().toString();
+    }
+}
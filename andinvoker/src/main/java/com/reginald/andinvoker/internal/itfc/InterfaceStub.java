@@ -0,0 +1,105 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+import com.reginald.andinvoker.InvokeException;
+import com.reginald.andinvoker.internal.CallWrapper;
+import com.reginald.andinvoker.internal.LogUtil;
+import com.reginald.andinvoker.internal.metrics.InvokeMetrics;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * base class of stubs for {@link com.reginald.andinvoker.api.RemoteInterface}, generated or reflective.
+ * generated stubs dispatch local methods without {@link Method#invoke(Object, Object...)}.
+ */
+public abstract class InterfaceStub<T> extends CallWrapper {
+    private static final String TAG = "InterfaceStub";
+
+    private final InterfaceInfo<T> mInterfaceInfo;
+    // generated method index for each method id
+    private final int[] mDispatchIndexes;
+
+    private final InterfaceHandler.StubDispatcher mDispatcher = new InterfaceHandler.StubDispatcher() {
+        @Override
+        public Object dispatch(int methodId, Method method, Object[] args) throws Throwable {
+            int index = methodId >= 0 && methodId < mDispatchIndexes.length ?
+                    mDispatchIndexes[methodId] : MethodTable.NO_METHOD;
+            if (index == MethodTable.NO_METHOD) {
+                throw new InvokeException(String.format("no generated dispatch found for %s", method));
+            }
+            return InterfaceStub.this.dispatch(index, mInterfaceInfo.object, args);
+        }
+    };
+
+    protected InterfaceStub(InterfaceInfo<T> interfaceInfo, Method[] methods) {
+        mInterfaceInfo = interfaceInfo;
+        mDispatchIndexes = new int[interfaceInfo.methodSignatures().length];
+        Arrays.fill(mDispatchIndexes, MethodTable.NO_METHOD);
+        for (int i = 0; i < methods.length; i++) {
+            int methodIndex = interfaceInfo.methodIndex(methods[i]);
+            if (methodIndex != MethodTable.NO_METHOD) {
+                mDispatchIndexes[methodIndex] = i;
+            }
+        }
+    }
+
+    @Override
+    public Bundle onCall(Bundle params) {
+        return InterfaceHandler.handleStubCall(mInterfaceInfo, params, mDispatcher);
+    }
+
+    @Override
+    public boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (code != InterfaceHandler.TRANSACTION_INTERFACE_CALL) {
+            return super.onTransact(code, data, reply, flags);
+        }
+
+        InvokeMetrics.Record record = InvokeMetrics.beginServer(data.dataSize());
+        try {
+            data.enforceInterface(InterfaceHandler.DESCRIPTOR);
+            if ((flags & IBinder.FLAG_ONEWAY) != 0) {
+                try {
+                    InterfaceHandler.handleStubTransact(mInterfaceInfo, data, null, mDispatcher);
+                } catch (Throwable t) {
+                    // no one is waiting for a oneway call
+                    InvokeMetrics.fail(record, t);
+                    LogUtil.e(TAG, "onTransact() oneway error!", t);
+                }
+            } else {
+                InterfaceHandler.handleStubTransact(mInterfaceInfo, data, reply, mDispatcher);
+                InvokeMetrics.setReplyBytes(record, reply.dataSize());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            InvokeMetrics.fail(record, e);
+            throw e;
+        } finally {
+            InvokeMetrics.end(record);
+        }
+    }
+
+    /**
+     * call in the same process without any parcel.
+     * @param methodId method id
+     * @param args encoded args
+     * @return encoded result
+     */
+    Object callLocal(int methodId, Object[] args) {
+        return InterfaceHandler.handleStubLocal(mInterfaceInfo, methodId, args, mDispatcher);
+    }
+
+    /**
+     * call the local method directly
+     * @param index index of method in generated methods
+     * @param target local interface object
+     * @param args decoded args
+     * @return result
+     * @throws Throwable exception thrown by the local method
+     */
+    protected abstract Object dispatch(int index, T target, Object[] args) throws Throwable;
+}
@@ -0,0 +1,102 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.Parcel;
+
+import com.reginald.andinvoker.api.Idempotent;
+import com.reginald.andinvoker.api.Priority;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * precomputed call plan of an interface method, so that no reflection metadata
+ * is fetched on each call.
+ */
+final class MethodPlan {
+    final Method method;
+    final CodecSlot[] parameters;
+    // return value with method annotations
+    final CodecSlot result;
+    final boolean oneway;
+    // loads Parcelables of this method in transactions
+    final ClassLoader classLoader;
+    // name of this method in metrics
+    final String metricsName;
+    // name of this method in trace sections
+    final String traceName;
+    // lane of queued calls, by @Priority of the method or its interface
+    final int priority;
+    // retried after the remote died, by @Idempotent of the method or its interface
+    final boolean idempotent;
+
+    MethodPlan(Method method, boolean oneway) {
+        this.method = method;
+        this.oneway = oneway;
+        classLoader = method.getDeclaringClass().getClassLoader();
+        // by signature, so that overloads are counted apart
+        metricsName = method.getDeclaringClass().getName() + "#" + MethodTable.signature(method);
+        traceName = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        Priority methodPriority = method.getAnnotation(Priority.class);
+        if (methodPriority == null) {
+            methodPriority = method.getDeclaringClass().getAnnotation(Priority.class);
+        }
+        priority = methodPriority != null ? methodPriority.value() : Priority.NORMAL;
+        idempotent = method.isAnnotationPresent(Idempotent.class)
+                || method.getDeclaringClass().isAnnotationPresent(Idempotent.class);
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        parameters = new CodecSlot[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameters[i] = new CodecSlot(parameterTypes[i], parameterAnnotations[i]);
+        }
+        result = new CodecSlot(method.getReturnType(), method.getAnnotations());
+    }
+
+    void encodeParams(CodecRegistry codecs, Object[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                args[i] = parameters[i].encode(codecs, args[i]);
+            }
+        }
+    }
+
+    void decodeParams(CodecRegistry codecs, Object[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                args[i] = parameters[i].decode(codecs, args[i]);
+            }
+        }
+    }
+
+    void writeParams(Parcel parcel, Object[] args) {
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i].writer.write(parcel, args[i]);
+        }
+    }
+
+    Object[] readParams(Parcel parcel) {
+        if (parameters.length == 0) {
+            return null;
+        }
+
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            args[i] = parameters[i].writer.read(parcel, classLoader);
+        }
+        return args;
+    }
+
+    void writeResult(Parcel parcel, Object value) {
+        result.writer.write(parcel, value);
+    }
+
+    Object readResult(Parcel parcel) {
+        return result.writer.read(parcel, classLoader);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(method);
+    }
+}
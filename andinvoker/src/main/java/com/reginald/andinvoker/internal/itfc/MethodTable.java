@@ -0,0 +1,143 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import com.reginald.andinvoker.api.Oneway;
+import com.reginald.andinvoker.internal.LogUtil;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * stable method ids of an interface.
+ * methods are ordered by signature, so that the id of a method is the same in every process
+ * as long as the interface is the same. ids of different interface versions are negotiated by signatures.
+ */
+final class MethodTable {
+    private static final String TAG = "MethodTable";
+
+    static final int NO_METHOD = -1;
+
+    private static final Map<Class<?>, MethodTable> sTables = new ConcurrentHashMap<>();
+
+    final Method[] methods;
+    final String[] signatures;
+    // call plans of methods
+    final MethodPlan[] plans;
+
+    private final Map<Method, Integer> mIndexes;
+
+    static MethodTable of(Class<?> interfaceClass) {
+        MethodTable table = sTables.get(interfaceClass);
+        if (table == null) {
+            table = new MethodTable(interfaceClass);
+            sTables.put(interfaceClass, table);
+        }
+        return table;
+    }
+
+    private MethodTable(Class<?> interfaceClass) {
+        // methods overridden in sub interfaces share the same signature
+        Map<String, Method> methodMap = new HashMap<>();
+        for (Method method : interfaceClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            String signature = signature(method);
+            Method existing = methodMap.get(signature);
+            if (existing == null ||
+                    existing.getDeclaringClass().isAssignableFrom(method.getDeclaringClass())) {
+                methodMap.put(signature, method);
+            }
+        }
+
+        List<String> signatureList = new ArrayList<>(methodMap.keySet());
+        Collections.sort(signatureList);
+
+        signatures = signatureList.toArray(new String[signatureList.size()]);
+        methods = new Method[signatures.length];
+        plans = new MethodPlan[signatures.length];
+        Map<String, Integer> signatureIndexes = new HashMap<>(signatures.length);
+        for (int i = 0; i < signatures.length; i++) {
+            methods[i] = methodMap.get(signatures[i]);
+            plans[i] = new MethodPlan(methods[i], isOneway(methods[i]));
+            signatureIndexes.put(signatures[i], i);
+        }
+
+        // overridden methods are mapped to the same index
+        mIndexes = new HashMap<>();
+        for (Method method : interfaceClass.getMethods()) {
+            Integer index = signatureIndexes.get(signature(method));
+            if (index != null) {
+                mIndexes.put(method, index);
+            }
+        }
+    }
+
+    int indexOf(Method method) {
+        Integer index = mIndexes.get(method);
+        return index != null ? index : NO_METHOD;
+    }
+
+    Method methodAt(int index) {
+        return index >= 0 && index < methods.length ? methods[index] : null;
+    }
+
+    MethodPlan planAt(int index) {
+        return index >= 0 && index < plans.length ? plans[index] : null;
+    }
+
+    /**
+     * map local method indexes to remote method ids.
+     * @param remoteSignatures method signatures of remote interface
+     * @return remote id for each local method, {@link #NO_METHOD} if remote does NOT have it
+     */
+    int[] negotiate(String[] remoteSignatures) {
+        int[] remoteIds = new int[methods.length];
+        Arrays.fill(remoteIds, NO_METHOD);
+        if (remoteSignatures != null) {
+            Map<String, Integer> remoteIndexes = new HashMap<>(remoteSignatures.length);
+            for (int i = 0; i < remoteSignatures.length; i++) {
+                remoteIndexes.put(remoteSignatures[i], i);
+            }
+
+            for (int i = 0; i < methods.length; i++) {
+                Integer remoteId = remoteIndexes.get(signatures[i]);
+                if (remoteId != null) {
+                    remoteIds[i] = remoteId;
+                }
+            }
+        }
+        return remoteIds;
+    }
+
+    private static boolean isOneway(Method method) {
+        if (!method.isAnnotationPresent(Oneway.class)) {
+            return false;
+        }
+
+        if (method.getReturnType() != void.class) {
+            LogUtil.w(TAG, "@Oneway is ignored for non-void method %s", method);
+            return false;
+        }
+
+        return true;
+    }
+
+    static String signature(Method method) {
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(parameterTypes[i].getName());
+        }
+        return sb.append(')').toString();
+    }
+}
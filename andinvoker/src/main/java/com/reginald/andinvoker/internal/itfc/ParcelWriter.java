@@ -0,0 +1,331 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.reginald.andinvoker.internal.LargePayload;
+import com.reginald.andinvoker.internal.LogUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * type-specialized writer of a parameter (or return value) in interface transactions.
+ * values of the exact declared type are written without type tags or class names,
+ * others (e.g. encoded values, subclasses) fall back to {@link Parcel#writeValue(Object)}.
+ * large Strings, byte arrays and Bundles are passed as {@link LargePayload} if enabled.
+ */
+abstract class ParcelWriter {
+    private static final String TAG = "ParcelWriter";
+
+    private static final int VAL_NULL = 0;
+    private static final int VAL_TYPED = 1;
+    private static final int VAL_GENERIC = 2;
+    private static final int VAL_LARGE = 3;
+
+    static final ParcelWriter VOID = new ParcelWriter() {
+        @Override
+        void write(Parcel parcel, Object value) {
+        }
+
+        @Override
+        Object read(Parcel parcel, ClassLoader classLoader) {
+            return null;
+        }
+    };
+
+    static ParcelWriter of(Class<?> type) {
+        if (type == void.class) {
+            return VOID;
+        } else if (type.isPrimitive()) {
+            return new PrimitiveWriter(type);
+        }
+
+        if (type == String.class) {
+            return new TypedWriter(type, TypedWriter.STRING, null);
+        } else if (type == Integer.class) {
+            return new TypedWriter(type, TypedWriter.INT, null);
+        } else if (type == Long.class) {
+            return new TypedWriter(type, TypedWriter.LONG, null);
+        } else if (type == Boolean.class) {
+            return new TypedWriter(type, TypedWriter.BOOLEAN, null);
+        } else if (type == Double.class) {
+            return new TypedWriter(type, TypedWriter.DOUBLE, null);
+        } else if (type == byte[].class) {
+            return new TypedWriter(type, TypedWriter.BYTES, null);
+        } else if (type == Bundle.class) {
+            return new TypedWriter(type, TypedWriter.BUNDLE, null);
+        } else if (Parcelable.class.isAssignableFrom(type)) {
+            Parcelable.Creator<?> creator = creatorOf(type);
+            if (creator != null) {
+                return new TypedWriter(type, TypedWriter.PARCELABLE, creator);
+            }
+        }
+
+        return new TypedWriter(type, TypedWriter.GENERIC, null);
+    }
+
+    private static Parcelable.Creator<?> creatorOf(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+
+        try {
+            Field field = type.getField("CREATOR");
+            return (Parcelable.Creator<?>) field.get(null);
+        } catch (Exception e) {
+            LogUtil.w(TAG, "creatorOf() no CREATOR found for %s", type);
+            return null;
+        }
+    }
+
+    abstract void write(Parcel parcel, Object value);
+
+    abstract Object read(Parcel parcel, ClassLoader classLoader);
+
+    private static final class PrimitiveWriter extends ParcelWriter {
+        private final Class<?> mType;
+
+        PrimitiveWriter(Class<?> type) {
+            mType = type;
+        }
+
+        @Override
+        void write(Parcel parcel, Object value) {
+            if (mType == int.class) {
+                parcel.writeInt((Integer) value);
+            } else if (mType == long.class) {
+                parcel.writeLong((Long) value);
+            } else if (mType == boolean.class) {
+                parcel.writeInt((Boolean) value ? 1 : 0);
+            } else if (mType == float.class) {
+                parcel.writeFloat((Float) value);
+            } else if (mType == double.class) {
+                parcel.writeDouble((Double) value);
+            } else if (mType == short.class) {
+                parcel.writeInt((Short) value);
+            } else if (mType == byte.class) {
+                parcel.writeInt((Byte) value);
+            } else {
+                parcel.writeInt((Character) value);
+            }
+        }
+
+        @Override
+        Object read(Parcel parcel, ClassLoader classLoader) {
+            if (mType == int.class) {
+                return parcel.readInt();
+            } else if (mType == long.class) {
+                return parcel.readLong();
+            } else if (mType == boolean.class) {
+                return parcel.readInt() != 0;
+            } else if (mType == float.class) {
+                return parcel.readFloat();
+            } else if (mType == double.class) {
+                return parcel.readDouble();
+            } else if (mType == short.class) {
+                return (short) parcel.readInt();
+            } else if (mType == byte.class) {
+                return (byte) parcel.readInt();
+            } else {
+                return (char) parcel.readInt();
+            }
+        }
+    }
+
+    private static final class TypedWriter extends ParcelWriter {
+        static final int GENERIC = 0;
+        static final int STRING = 1;
+        static final int INT = 2;
+        static final int LONG = 3;
+        static final int BOOLEAN = 4;
+        static final int DOUBLE = 5;
+        static final int BYTES = 6;
+        static final int BUNDLE = 7;
+        static final int PARCELABLE = 8;
+
+        private final Class<?> mType;
+        private final int mKind;
+        private final Parcelable.Creator<?> mCreator;
+
+        TypedWriter(Class<?> type, int kind, Parcelable.Creator<?> creator) {
+            mType = type;
+            mKind = kind;
+            mCreator = creator;
+        }
+
+        @Override
+        void write(Parcel parcel, Object value) {
+            if (value == null) {
+                parcel.writeInt(VAL_NULL);
+                return;
+            }
+
+            if (mKind == GENERIC || value.getClass() != mType) {
+                parcel.writeInt(VAL_GENERIC);
+                parcel.writeValue(value);
+                return;
+            }
+
+            if (LargePayload.isEnabled() && writeLarge(parcel, value)) {
+                return;
+            }
+
+            parcel.writeInt(VAL_TYPED);
+            writeTyped(parcel, value);
+        }
+
+        @Override
+        Object read(Parcel parcel, ClassLoader classLoader) {
+            int tag = parcel.readInt();
+            if (tag == VAL_NULL) {
+                return null;
+            } else if (tag == VAL_GENERIC) {
+                return parcel.readValue(classLoader);
+            } else if (tag == VAL_LARGE) {
+                Parcel typed = LargePayload.CREATOR.createFromParcel(parcel).toParcel();
+                try {
+                    return readTyped(typed, classLoader);
+                } finally {
+                    typed.recycle();
+                }
+            }
+
+            return readTyped(parcel, classLoader);
+        }
+
+        private boolean writeLarge(Parcel parcel, Object value) {
+            int estimatedSize;
+            if (mKind == BYTES) {
+                estimatedSize = ((byte[]) value).length;
+            } else if (mKind == STRING) {
+                estimatedSize = ((String) value).length() * 2;
+            } else if (mKind == BUNDLE) {
+                writeMeasured(parcel, value);
+                return true;
+            } else {
+                return false;
+            }
+
+            if (!LargePayload.isLarge(estimatedSize)) {
+                return false;
+            }
+
+            Parcel typed = Parcel.obtain();
+            try {
+                writeTyped(typed, value);
+                if (LargePayload.isLarge(typed.dataSize())) {
+                    LargePayload payload = LargePayload.create(typed.marshall());
+                    parcel.writeInt(VAL_LARGE);
+                    payload.writeToParcel(parcel, Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
+                } else {
+                    parcel.writeInt(VAL_TYPED);
+                    parcel.appendFrom(typed, 0, typed.dataSize());
+                }
+                return true;
+            } catch (IOException e) {
+                LogUtil.w(TAG, "writeLarge() error, written in parcel instead", e);
+                return false;
+            } catch (RuntimeException e) {
+                // e.g. bundles with binders can NOT be marshalled
+                LogUtil.w(TAG, "writeLarge() error, written in parcel instead", e);
+                return false;
+            } finally {
+                typed.recycle();
+            }
+        }
+
+        /**
+         * size of a bundle is unknown until written, so it is written in place once,
+         * and moved into a payload only if large
+         */
+        private void writeMeasured(Parcel parcel, Object value) {
+            int tagPosition = parcel.dataPosition();
+            parcel.writeInt(VAL_TYPED);
+            int start = parcel.dataPosition();
+            writeTyped(parcel, value);
+            int end = parcel.dataPosition();
+            if (!LargePayload.isLarge(end - start)) {
+                return;
+            }
+
+            Parcel typed = Parcel.obtain();
+            Parcel large = Parcel.obtain();
+            try {
+                typed.appendFrom(parcel, start, end - start);
+                LargePayload payload = LargePayload.create(typed.marshall());
+                large.writeInt(VAL_LARGE);
+                payload.writeToParcel(large, Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
+
+                parcel.setDataSize(tagPosition);
+                parcel.setDataPosition(tagPosition);
+                parcel.appendFrom(large, 0, large.dataSize());
+            } catch (IOException e) {
+                LogUtil.w(TAG, "writeMeasured() error, written in parcel instead", e);
+                parcel.setDataPosition(end);
+            } catch (RuntimeException e) {
+                // e.g. bundles with binders can NOT be marshalled
+                LogUtil.w(TAG, "writeMeasured() error, written in parcel instead", e);
+                parcel.setDataPosition(end);
+            } finally {
+                typed.recycle();
+                large.recycle();
+            }
+        }
+
+        private void writeTyped(Parcel parcel, Object value) {
+            switch (mKind) {
+                case STRING:
+                    parcel.writeString((String) value);
+                    break;
+                case INT:
+                    parcel.writeInt((Integer) value);
+                    break;
+                case LONG:
+                    parcel.writeLong((Long) value);
+                    break;
+                case BOOLEAN:
+                    parcel.writeInt((Boolean) value ? 1 : 0);
+                    break;
+                case DOUBLE:
+                    parcel.writeDouble((Double) value);
+                    break;
+                case BYTES:
+                    parcel.writeByteArray((byte[]) value);
+                    break;
+                case BUNDLE:
+                    parcel.writeBundle((Bundle) value);
+                    break;
+                default:
+                    ((Parcelable) value).writeToParcel(parcel, 0);
+                    break;
+            }
+        }
+
+        private Object readTyped(Parcel parcel, ClassLoader classLoader) {
+            switch (mKind) {
+                case STRING:
+                    return parcel.readString();
+                case INT:
+                    return parcel.readInt();
+                case LONG:
+                    return parcel.readLong();
+                case BOOLEAN:
+                    return parcel.readInt() != 0;
+                case DOUBLE:
+                    return parcel.readDouble();
+                case BYTES:
+                    return parcel.createByteArray();
+                case BUNDLE:
+                    return parcel.readBundle(classLoader);
+                default:
+                    if (mCreator instanceof Parcelable.ClassLoaderCreator) {
+                        return ((Parcelable.ClassLoaderCreator<?>) mCreator).createFromParcel(parcel, classLoader);
+                    }
+                    return mCreator.createFromParcel(parcel);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.reginald.andinvoker.internal.itfc;
+
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.reginald.andinvoker.InvokeException;
+import com.reginald.andinvoker.internal.Backoff;
+import com.reginald.andinvoker.internal.Call;
+import com.reginald.andinvoker.internal.LogUtil;
+
+/**
+ * target of a resilient interface proxy. the remote stub is fetched again after it dies,
+ * so that callers may hold the proxy for the app lifetime.
+ */
+public abstract class RebindableCall implements Call {
+    private static final String TAG = "RebindableCall";
+
+    private final InterfaceInfo<?> mInterfaceInfo;
+    private volatile Call mTarget;
+    // last bound target, still answers asBinder() if binding fails
+    private volatile Call mLastTarget;
+
+    // failed binds in a row, binding is NOT tried again before mNextBindTime
+    private int mFailures;
+    private long mNextBindTime;
+
+    protected RebindableCall(InterfaceInfo<?> interfaceInfo) {
+        mInterfaceInfo = interfaceInfo;
+    }
+
+    /**
+     * fetch the remote stub
+     * @return stub, never null
+     * @throws InvokeException if fetch fails
+     */
+    protected abstract InterfaceParcelable fetch() throws InvokeException;
+
+    /**
+     * bound target, fetched again if unbound or dead
+     * @return target
+     * @throws InvokeException if fetch fails, or within the backoff of the last failure
+     */
+    public Call target() throws InvokeException {
+        Call target = mTarget;
+        if (target != null && isAlive(target)) {
+            return target;
+        }
+
+        synchronized (this) {
+            target = mTarget;
+            if (target != null && isAlive(target)) {
+                return target;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            if (now < mNextBindTime) {
+                throw new InvokeException(String.format("%s unbound, rebind after %d ms",
+                        mInterfaceInfo.interfaceClass, mNextBindTime - now));
+            }
+
+            try {
+                InterfaceParcelable interfaceParcelable = fetch();
+                // the remote may be upgraded
+                mInterfaceInfo.negotiate(interfaceParcelable.methods);
+                target = Call.Stub.asInterface(interfaceParcelable.iBinder);
+                mTarget = target;
+                mLastTarget = target;
+                mFailures = 0;
+                mNextBindTime = 0;
+                LogUtil.d(TAG, "target() bound %s for %s", target, mInterfaceInfo.interfaceClass);
+                return target;
+            } catch (RuntimeException e) {
+                mNextBindTime = now + Backoff.delayOf(mFailures++);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * drop the target after it died, the next call binds again
+     */
+    public synchronized void unbind(Call target) {
+        if (mTarget == target) {
+            mTarget = null;
+        }
+    }
+
+    /**
+     * @return time to wait before the next bind
+     */
+    public synchronized long rebindDelay() {
+        return Math.max(0, mNextBindTime - SystemClock.elapsedRealtime());
+    }
+
+    private static boolean isAlive(Call target) {
+        IBinder binder = target.asBinder();
+        return binder != null && binder.isBinderAlive();
+    }
+
+    @Override
+    public Bundle onCall(Bundle params) throws RemoteException {
+        return target().onCall(params);
+    }
+
+    @Override
+    public void onCallAsync(Bundle params) throws RemoteException {
+        target().onCallAsync(params);
+    }
+
+    @Override
+    public IBinder asBinder() {
+        try {
+            return target().asBinder();
+        } catch (InvokeException e) {
+            Call lastTarget = mLastTarget;
+            if (lastTarget == null) {
+                throw e;
+            }
+            return lastTarget.asBinder();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (LogUtil.LOG_ENABLED) {
+            return String.format("RebindableCall[ interface = %s, target = %s ]",
+                    mInterfaceInfo.interfaceClass, mTarget);
+        } else {
+            return super.toString();
+        }
+    }
+}
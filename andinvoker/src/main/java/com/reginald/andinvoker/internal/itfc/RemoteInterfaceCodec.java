@@ -6,10 +6,14 @@ import com.reginald.andinvoker.api.RemoteInterface;
 import com.reginald.andinvoker.internal.Call;
 
 import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RemoteInterfaceCodec implements Codec<Object, InterfaceParcelable> {
     private static final String TAG = "RemoteInterfaceCodec";
 
+    private static final Map<Class<?>, Boolean> sRemoteInterfaceClasses = new ConcurrentHashMap<>();
+
     @Override
     public boolean handleDecode(InterfaceParcelable obj, Class<Object> clazz, Annotation[] annotations) {
         return isRemoteInterface(clazz, annotations);
@@ -18,7 +22,7 @@ public class RemoteInterfaceCodec implements Codec<Object, InterfaceParcelable>
     @Override
     public Object decode(InterfaceParcelable obj, Class<Object> clazz) {
         InterfaceInfo<Object> interfaceInfo = new InterfaceInfo(clazz);
-        Object decodedObj = interfaceInfo.fetchProxy(Call.Stub.asInterface(obj.iBinder));
+        Object decodedObj = interfaceInfo.fetchProxy(Call.Stub.asInterface(obj.iBinder), obj.methods);
 
         LogUtil.d(TAG, "decode() src = %s, clazz = %s -> %s",
                 obj, clazz, decodedObj);
@@ -35,7 +39,8 @@ public class RemoteInterfaceCodec implements Codec<Object, InterfaceParcelable>
         InterfaceInfo interfaceInfo = new InterfaceInfo(src, clazz);
         Call stub = interfaceInfo.fetchStub();
         if (stub != null) {
-            InterfaceParcelable encodedInterface = new InterfaceParcelable(stub.asBinder());
+            InterfaceParcelable encodedInterface = new InterfaceParcelable(stub.asBinder(),
+                    interfaceInfo.methodSignatures());
             LogUtil.d(TAG, "encode() src = %s, clazz = %s -> %s",
                     src, clazz, stub);
             return encodedInterface;
@@ -48,13 +53,14 @@ public class RemoteInterfaceCodec implements Codec<Object, InterfaceParcelable>
             return false;
         }
 
-        Annotation[] classAnnotations = clazz.getAnnotations();
-        if (classAnnotations != null) {
-            for (Annotation annotation : classAnnotations) {
-                if (annotation instanceof RemoteInterface) {
-                    return true;
-                }
-            }
+        Boolean isRemoteClass = sRemoteInterfaceClasses.get(clazz);
+        if (isRemoteClass == null) {
+            isRemoteClass = clazz.isAnnotationPresent(RemoteInterface.class);
+            sRemoteInterfaceClasses.put(clazz, isRemoteClass);
+        }
+
+        if (isRemoteClass) {
+            return true;
         }
 
         if (annotations != null) {
@@ -0,0 +1,100 @@
+package com.reginald.andinvoker.internal.metrics;
+
+import com.reginald.andinvoker.api.IMetricsListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counters and latency histogram of one kind of call, e.g. client invoke of a service.
+ */
+public final class CallStats {
+    public final String side;
+    public final String operation;
+    public final String provider;
+    public final String name;
+
+    private final AtomicLong mCalls = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mRequestBytes = new AtomicLong();
+    private final AtomicLong mReplyBytes = new AtomicLong();
+    // nanoseconds
+    private final Histogram mLatency = new Histogram();
+
+    CallStats(String side, String operation, String provider, String name) {
+        this.side = side;
+        this.operation = operation;
+        this.provider = provider;
+        this.name = name;
+    }
+
+    void record(long durationNanos, long requestBytes, long replyBytes, boolean error) {
+        mCalls.incrementAndGet();
+        if (error) {
+            mErrors.incrementAndGet();
+        }
+        if (requestBytes != IMetricsListener.UNKNOWN_BYTES) {
+            mRequestBytes.addAndGet(requestBytes);
+        }
+        if (replyBytes != IMetricsListener.UNKNOWN_BYTES) {
+            mReplyBytes.addAndGet(replyBytes);
+        }
+        mLatency.record(durationNanos);
+    }
+
+    void reset() {
+        mCalls.set(0);
+        mErrors.set(0);
+        mRequestBytes.set(0);
+        mReplyBytes.set(0);
+        mLatency.reset();
+    }
+
+    public long calls() {
+        return mCalls.get();
+    }
+
+    public long errors() {
+        return mErrors.get();
+    }
+
+    public long requestBytes() {
+        return mRequestBytes.get();
+    }
+
+    public long replyBytes() {
+        return mReplyBytes.get();
+    }
+
+    public Histogram.Snapshot latency() {
+        return mLatency.snapshot();
+    }
+
+    void dump(StringBuilder sb) {
+        Histogram.Snapshot latency = mLatency.snapshot();
+        sb.append(side).append(' ').append(operation)
+                .append(" [").append(provider != null ? provider : "local").append("] ")
+                .append(name != null ? name : "*")
+                .append(": calls = ").append(mCalls.get())
+                .append(", errors = ").append(mErrors.get())
+                .append(", request bytes = ").append(mRequestBytes.get())
+                .append(", reply bytes = ").append(mReplyBytes.get())
+                .append(", latency(us) mean = ").append(micros(latency.mean()))
+                .append(", p50 = ").append(micros(latency.percentile(50)))
+                .append(", p90 = ").append(micros(latency.percentile(90)))
+                .append(", p99 = ").append(micros(latency.percentile(99)))
+                .append(", max = ").append(micros(latency.max))
+                .append('\n');
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        dump(sb);
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,270 @@
+package com.reginald.andinvoker.internal.metrics;
+
+import com.reginald.andinvoker.api.IMetricsListener;
+import com.reginald.andinvoker.internal.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * built-in registry of ipc call metrics, disabled by default.
+ * stats are looked up by side/operation/provider/name without allocation once created,
+ * and recorded by atomic counters only.
+ */
+public final class InvokeMetrics {
+    private static final String TAG = "InvokeMetrics";
+
+    public static final String SIDE_CLIENT = "client";
+    public static final String SIDE_SERVER = "server";
+
+    public static final String OP_INVOKE = "invoke";
+    public static final String OP_INVOKE_ASYNC = "invokeAsync";
+    public static final String OP_INVOKE_STREAM = "invokeStream";
+    public static final String OP_INVOKE_BATCH = "invokeBatch";
+    public static final String OP_FETCH_SERVICE = "fetchService";
+    public static final String OP_FETCH_INTERFACE = "fetchInterface";
+    public static final String OP_REGISTER = "register";
+    public static final String OP_REGISTER_BATCH = "registerBatch";
+    public static final String OP_INTERFACE = "interface";
+    public static final String OP_RESOLVE_OWNER = "resolveOwner";
+    public static final String OP_FETCH_DIRECTORY = "fetchDirectory";
+
+    // keys of ConcurrentHashMap can NOT be null
+    private static final String NULL_KEY = "";
+
+    private static volatile boolean sEnabled;
+    private static volatile IMetricsListener sListener;
+
+    // side -> operation -> provider -> name -> stats
+    private static final Node sRoot = new Node();
+
+    // incoming transaction being handled by the current thread
+    private static final ThreadLocal<Record> sServerRecord = new ThreadLocal<>();
+
+    private InvokeMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setListener(IMetricsListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * get or create stats
+     * @return stats
+     */
+    public static CallStats stats(String side, String operation, String provider, String name) {
+        Node node = sRoot.child(side).child(operation).child(provider).child(name);
+        CallStats stats = node.stats;
+        if (stats == null) {
+            synchronized (node) {
+                stats = node.stats;
+                if (stats == null) {
+                    stats = new CallStats(side, operation, provider, name);
+                    node.stats = stats;
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * start recording a call
+     * @return record, or null if metrics are disabled
+     */
+    public static Record begin(String side, String operation, String provider, String name) {
+        if (!sEnabled) {
+            return null;
+        }
+        Record record = new Record(System.nanoTime(), false, null);
+        record.stats = stats(side, operation, provider, name);
+        return record;
+    }
+
+    /**
+     * start recording an incoming transaction, which is named later by {@link #tagServer(String, String)}
+     * @param requestBytes size of the transaction data
+     * @return record, or null if metrics are disabled
+     */
+    public static Record beginServer(long requestBytes) {
+        if (!sEnabled) {
+            return null;
+        }
+        Record record = new Record(System.nanoTime(), true, sServerRecord.get());
+        record.requestBytes = requestBytes;
+        sServerRecord.set(record);
+        return record;
+    }
+
+    /**
+     * name the incoming transaction being handled by the current thread.
+     * only the first tag is taken, so local calls made while handling it are NOT counted twice.
+     * names sent by clients are tagged later by {@link #nameServer(String)} once found registered,
+     * so that unknown names are all counted in the stats of the operation.
+     */
+    public static void tagServer(String operation, String name) {
+        if (!sEnabled) {
+            return;
+        }
+        Record record = sServerRecord.get();
+        if (record != null && record.stats == null) {
+            record.operation = operation;
+            record.named = name != null;
+            record.stats = stats(SIDE_SERVER, operation, null, name);
+        }
+    }
+
+    /**
+     * name the incoming transaction tagged by {@link #tagServer(String, String)} without a name
+     * @param name registered name
+     */
+    public static void nameServer(String name) {
+        if (!sEnabled) {
+            return;
+        }
+        Record record = sServerRecord.get();
+        if (record != null && record.operation != null && !record.named) {
+            record.named = true;
+            record.stats = stats(SIDE_SERVER, record.operation, null, name);
+        }
+    }
+
+    public static void setBytes(Record record, long requestBytes, long replyBytes) {
+        if (record != null) {
+            record.requestBytes = requestBytes;
+            record.replyBytes = replyBytes;
+        }
+    }
+
+    public static void setReplyBytes(Record record, long replyBytes) {
+        if (record != null) {
+            record.replyBytes = replyBytes;
+        }
+    }
+
+    public static void fail(Record record, Throwable error) {
+        if (record != null) {
+            record.error = error;
+        }
+    }
+
+    public static void end(Record record) {
+        if (record == null) {
+            return;
+        }
+
+        long duration = System.nanoTime() - record.startNanos;
+        if (record.server) {
+            sServerRecord.set(record.parent);
+        }
+
+        CallStats stats = record.stats;
+        if (stats == null) {
+            // untagged transactions, e.g. INTERFACE_TRANSACTION
+            return;
+        }
+        stats.record(duration, record.requestBytes, record.replyBytes, record.error != null);
+
+        IMetricsListener listener = sListener;
+        if (listener != null) {
+            try {
+                listener.onCallFinished(stats.side, stats.operation, stats.provider, stats.name,
+                        duration, record.requestBytes, record.replyBytes, record.error);
+            } catch (Throwable t) {
+                LogUtil.e(TAG, "end() listener error!", t);
+            }
+        }
+    }
+
+    /**
+     * all stats created so far
+     * @return stats
+     */
+    public static List<CallStats> snapshot() {
+        List<CallStats> result = new ArrayList<>();
+        sRoot.collect(result);
+        return result;
+    }
+
+    /**
+     * dump all stats, one line for each
+     * @return text for crash/perf reports
+     */
+    public static String dump() {
+        List<CallStats> allStats = snapshot();
+        List<String> lines = new ArrayList<>(allStats.size());
+        for (CallStats stats : allStats) {
+            lines.add(stats.toString());
+        }
+        Collections.sort(lines);
+
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void reset() {
+        for (CallStats stats : snapshot()) {
+            stats.reset();
+        }
+    }
+
+    public static final class Record {
+        final long startNanos;
+        final Record parent;
+        final boolean server;
+        CallStats stats;
+        String operation;
+        boolean named;
+        long requestBytes = IMetricsListener.UNKNOWN_BYTES;
+        long replyBytes = IMetricsListener.UNKNOWN_BYTES;
+        Throwable error;
+
+        Record(long startNanos, boolean server, Record parent) {
+            this.startNanos = startNanos;
+            this.server = server;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Node {
+        private final ConcurrentHashMap<String, Node> mChildren = new ConcurrentHashMap<>();
+        volatile CallStats stats;
+
+        Node child(String key) {
+            if (key == null) {
+                key = NULL_KEY;
+            }
+            Node child = mChildren.get(key);
+            if (child == null) {
+                Node newChild = new Node();
+                child = mChildren.putIfAbsent(key, newChild);
+                if (child == null) {
+                    child = newChild;
+                }
+            }
+            return child;
+        }
+
+        void collect(List<CallStats> result) {
+            CallStats s = stats;
+            if (s != null) {
+                result.add(s);
+            }
+            for (Node child : mChildren.values()) {
+                child.collect(result);
+            }
+        }
+    }
+}
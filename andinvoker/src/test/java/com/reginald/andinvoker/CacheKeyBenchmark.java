@@ -0,0 +1,78 @@
+package com.reginald.andinvoker;
+
+import android.os.Binder;
+import android.os.IBinder;
+
+import com.reginald.andinvoker.internal.cache.BinderCache;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * microbenchmark of cached fetchService(), the old String.format key + Loader against
+ * the interned key + peek. NOT a unit test, run main() manually on the JVM against android.jar
+ * stubs returning default values. results are printed, B/op only if the JVM counts allocations.
+ */
+public class CacheKeyBenchmark {
+    private static final String PROVIDER = "com.example.provider";
+    private static final String SERVICE = "com.example.serviceA";
+    private static final int CALLS = 1000 * 1000;
+    private static final int ROUNDS = 3;
+
+    private static volatile Object sSink;
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        Method cacheKey = AndInvoker.class.getDeclaredMethod("cacheKey", String.class, String.class);
+        cacheKey.setAccessible(true);
+        Field cacheField = AndInvoker.class.getDeclaredField("sBinderServiceCache");
+        cacheField.setAccessible(true);
+        final BinderCache<IBinder> cache = (BinderCache<IBinder>) cacheField.get(null);
+        final IBinder binder = new Binder();
+        cache.put((String) cacheKey.invoke(null, PROVIDER, SERVICE), binder);
+
+        boolean countsAllocations = allocatedBytes() >= 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocStart = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                sSink = cache.get(String.format("[p=%s,s=%s]", PROVIDER, SERVICE),
+                        new BinderCache.Loader<IBinder>() {
+                            @Override
+                            public IBinder load() {
+                                return binder;
+                            }
+                        });
+            }
+            long oldEnd = System.nanoTime();
+            long oldAllocEnd = allocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                sSink = AndInvoker.fetchService(null, PROVIDER, SERVICE);
+            }
+            long newEnd = System.nanoTime();
+            long newAllocEnd = allocatedBytes();
+
+            System.out.println(String.format("round %d: old %.1f ns/op %s | new %.1f ns/op %s",
+                    round, (oldEnd - start) / (double) CALLS,
+                    bytesPerOp(countsAllocations, oldAllocEnd - allocStart),
+                    (newEnd - oldEnd) / (double) CALLS,
+                    bytesPerOp(countsAllocations, newAllocEnd - oldAllocEnd)));
+        }
+    }
+
+    private static String bytesPerOp(boolean countsAllocations, long bytes) {
+        return countsAllocations ? String.format("%.2f B/op", bytes / (double) CALLS) : "B/op n/a";
+    }
+
+    // -1 if NOT supported by the JVM
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
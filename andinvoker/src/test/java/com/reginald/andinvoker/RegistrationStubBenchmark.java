@@ -0,0 +1,77 @@
+package com.reginald.andinvoker;
+
+import android.content.Context;
+
+import com.reginald.andinvoker.api.IInvoker;
+import com.reginald.andinvoker.api.IServiceFetcher;
+import com.reginald.andinvoker.internal.ServiceDispatcher;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * retained heap of registering names remotely, one InvokerStub for each name against
+ * one shared stub for all of them. NOT a unit test, run main() manually on the JVM against
+ * android.jar stubs returning default values. heap after System.gc() is noisy, results are
+ * printed for comparison only, and are of the JVM, NOT of ART.
+ */
+public class RegistrationStubBenchmark {
+    private static final int NAMES = 2000;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    private static final IServiceFetcher<IInvoker> FETCHER = new IServiceFetcher<IInvoker>() {
+        @Override
+        public IInvoker onFetchService(Context context) {
+            return null;
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        Class<?> stubClass = Class.forName("com.reginald.andinvoker.AndInvokerProvider$InvokerStub");
+        Constructor<?> constructor = stubClass.getDeclaredConstructor(Context.class);
+        constructor.setAccessible(true);
+        Method register = stubClass.getDeclaredMethod("registerLocalInvoker", String.class,
+                IServiceFetcher.class, ServiceDispatcher.class);
+        register.setAccessible(true);
+
+        List<String> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            names.add(("com.example.service.name" + i).intern());
+        }
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            retainedBytes(constructor, register, names, true);
+            retainedBytes(constructor, register, names, false);
+        }
+
+        long perName = retainedBytes(constructor, register, names, true) / NAMES;
+        long shared = retainedBytes(constructor, register, names, false) / NAMES;
+        System.out.println(String.format("%d names: one stub per name %d B/name | shared stub %d B/name",
+                NAMES, perName, shared));
+    }
+
+    private static long retainedBytes(Constructor<?> constructor, Method register, List<String> names,
+            boolean stubPerName) throws Exception {
+        List<Object> stubs = new ArrayList<>(names.size());
+        long before = usedBytes();
+        Object shared = stubPerName ? null : constructor.newInstance((Object) null);
+        for (String name : names) {
+            Object stub = stubPerName ? constructor.newInstance((Object) null) : shared;
+            register.invoke(stub, name, FETCHER, ServiceDispatcher.INLINE);
+            stubs.add(stub);
+        }
+        long after = usedBytes();
+        // keep stubs reachable until measured
+        return stubs.isEmpty() ? 0 : after - before;
+    }
+
+    private static long usedBytes() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
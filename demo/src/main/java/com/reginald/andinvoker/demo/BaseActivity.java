@@ -210,6 +210,9 @@ public class BaseActivity extends Activity {
                     myInterface.testVoid();
                     Log.d(getTag(), String.format("invokeInterface() testVoid finish", provider));
 
+                    myInterface.testOneway();
+                    Log.d(getTag(), String.format("invokeInterface() testOneway sent", provider));
+
 
                     IMyInterface returnInterface = null;
                     returnInterface = myInterface.testInterface(localInterface);
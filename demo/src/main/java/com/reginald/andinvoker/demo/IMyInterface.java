@@ -3,6 +3,7 @@ package com.reginald.andinvoker.demo;
 import android.os.Bundle;
 import android.os.IBinder;
 
+import com.reginald.andinvoker.api.Oneway;
 import com.reginald.andinvoker.api.RemoteInterface;
 import com.reginald.andinvoker.demo.gson.MyGson;
 
@@ -16,5 +17,8 @@ public interface IMyInterface {
 
     void testVoid();
 
+    @Oneway
+    void testOneway();
+
     IMyInterface testInterface(IMyInterface paramInterface);
 }
@@ -31,6 +31,12 @@ public class IMyInterfaceImpl implements IMyInterface {
                 CommonUtils.getCurrentProcessName(mContext)));
     }
 
+    @Override
+    public void testOneway() {
+        Log.d(CommonUtils.getTag(mContext), String.format("testOneway() in [process %s] : ",
+                CommonUtils.getCurrentProcessName(mContext)));
+    }
+
     @Override
     public IMyInterface testInterface(IMyInterface paramInterface) {
         Log.d(CommonUtils.getTag(mContext), String.format("testInterface() in [process %s] : " +